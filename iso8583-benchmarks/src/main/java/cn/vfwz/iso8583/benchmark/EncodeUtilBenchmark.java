@@ -0,0 +1,101 @@
+package cn.vfwz.iso8583.benchmark;
+
+import cn.vfwz.iso8583.util.EncodeUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>EncodeUtil查表实现与原实现的对比</p>
+ * <p>size为字节数，8/16对应bitmap，256对应较长的域如55域</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodeUtilBenchmark {
+
+    @Param({"8", "16", "256"})
+    private int size;
+
+    private byte[] bytes;
+    private String hex;
+    private String bits;
+    private char[] chars;
+    private byte[] dst;
+
+    @Setup
+    public void setup() {
+        bytes = new byte[size];
+        new Random(8583).nextBytes(bytes);
+        hex = EncodeUtil.bytes2Hex(bytes);
+        bits = EncodeUtil.binary(bytes);
+        chars = new char[size * 2];
+        dst = new byte[size];
+    }
+
+    @Benchmark
+    public String bytes2HexLegacy() {
+        return LegacyEncodeUtil.bytes2Hex(bytes);
+    }
+
+    @Benchmark
+    public String bytes2Hex() {
+        return EncodeUtil.bytes2Hex(bytes);
+    }
+
+    @Benchmark
+    public char[] bytes2HexInto() {
+        EncodeUtil.bytes2Hex(bytes, 0, bytes.length, chars, 0);
+        return chars;
+    }
+
+    @Benchmark
+    public byte[] hex2BytesLegacy() {
+        return LegacyEncodeUtil.hex2Bytes(hex);
+    }
+
+    @Benchmark
+    public byte[] hex2Bytes() {
+        return EncodeUtil.hex2Bytes(hex);
+    }
+
+    @Benchmark
+    public byte[] hex2BytesInto() {
+        EncodeUtil.hex2Bytes(hex, dst, 0);
+        return dst;
+    }
+
+    @Benchmark
+    public byte[] binaryLegacy() {
+        return LegacyEncodeUtil.binary(bits);
+    }
+
+    @Benchmark
+    public byte[] binary() {
+        return EncodeUtil.binary(bits);
+    }
+
+    @Benchmark
+    public String binaryStringLegacy() {
+        return LegacyEncodeUtil.binary(bytes);
+    }
+
+    @Benchmark
+    public String binaryString() {
+        return EncodeUtil.binary(bytes);
+    }
+}
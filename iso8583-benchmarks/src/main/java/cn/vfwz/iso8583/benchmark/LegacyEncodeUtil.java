@@ -0,0 +1,75 @@
+package cn.vfwz.iso8583.benchmark;
+
+/**
+ * <p>查表实现之前的EncodeUtil，仅作为基准测试的对照</p>
+ */
+final class LegacyEncodeUtil {
+
+    private static final char[] HEX = new char[]{'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'};
+
+    private static final char[] BINARY = new char[]{'0', '1'};
+
+    private LegacyEncodeUtil() {
+    }
+
+    static byte[] binary(String binaryStr) {
+        if (binaryStr.length() % 8 != 0) {
+            throw new IllegalArgumentException("传入的参数长度必须是8的倍数");
+        }
+        StringBuilder accum = new StringBuilder();
+        for (int i = 0; i < binaryStr.length(); i += 4) {
+            String temp = binaryStr.substring(i, i + 4);
+            int value = 0;
+            for (int j = 0; j < 4; j++) {
+                if (temp.charAt(j) == '1') {
+                    value += Math.pow(2, 3 - j);
+                }
+            }
+            accum.append(HEX[value]);
+        }
+        return hex2Bytes(accum.toString());
+    }
+
+    static String bytes2Hex(byte[] bParam) {
+        StringBuilder accum = new StringBuilder();
+        for (byte bt : bParam) {
+            accum.append(HEX[bt >> 4 & 0x0F]);
+            accum.append(HEX[bt & 0x0F]);
+        }
+        return accum.toString();
+    }
+
+    static String binary(byte[] bts) {
+        StringBuilder accum = new StringBuilder();
+        for (byte bt : bts) {
+            accum.append(binary(bt));
+        }
+        return accum.toString();
+    }
+
+    private static String binary(byte bt) {
+        int num = bt & 0xFF;
+        char[] arrayOfChar = new char[8];
+        int i = 8;
+        for (int times = 0; times < 8; times++) {
+            arrayOfChar[(--i)] = BINARY[(num & 0x01)];
+            num >>>= 1;
+        }
+        return new String(arrayOfChar);
+    }
+
+    static byte[] hex2Bytes(String data) {
+        if (null == data || "".equals(data.trim())) {
+            return new byte[0];
+        }
+        data = data.trim();
+        data = data.length() % 2 == 0 ? data : "0" + data;
+        byte[] result = new byte[(data.length() + data.length() % 2) / 2];
+        for (int pointer = 0, index = 0; pointer < data.length(); pointer++, index++) {
+            int left = Character.digit(data.charAt(pointer), 16);
+            int right = Character.digit(data.charAt(++pointer), 16);
+            result[index] = (byte) ((left << 4) | right);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,108 @@
+package cn.vfwz.iso8583.benchmark;
+
+import cn.vfwz.iso8583.message.Message;
+import cn.vfwz.iso8583.message.MessageConfig;
+import cn.vfwz.iso8583.message.MessageDecoder;
+import cn.vfwz.iso8583.message.MessageEncoder;
+import cn.vfwz.iso8583.message.field.Field;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static cn.vfwz.iso8583.constant.FieldIndex.BITMAP;
+import static cn.vfwz.iso8583.constant.FieldIndex.F11;
+import static cn.vfwz.iso8583.constant.FieldIndex.TOTAL_MESSAGE_LENGTH;
+
+/**
+ * <p>报文编解码主要路径的吞吐量，覆盖POS 64域及银联128域配置</p>
+ * <p>配合-prof gc查看每次操作的分配字节数(gc.alloc.rate.norm)</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageCodecBenchmark {
+
+    @Param({"POS_SIGNIN", "POS_PAY", "POS_SIGN_IMG", "UNION_PAY"})
+    private Samples sample;
+
+    private MessageDecoder decoder;
+    private MessageEncoder encoder;
+    private byte[] frame;
+    private String hex;
+    private int[] indexes;
+    private String[] values;
+    private Message message;
+    private boolean toggle;
+
+    @Setup
+    public void setup() {
+        MessageConfig config = sample.config();
+        decoder = new MessageDecoder(config);
+        encoder = new MessageEncoder(config);
+        message = sample.message(config);
+        frame = message.getBytes();
+        hex = message.getHexString();
+        // 组装时设置的域，长度域及bitmap由报文自动生成
+        List<Field> fields = new ArrayList<>();
+        Iterator<Field> iterator = message.getFieldIterator();
+        while (iterator.hasNext()) {
+            Field field = iterator.next();
+            if (field.getIndex() != TOTAL_MESSAGE_LENGTH && field.getIndex() != BITMAP) {
+                fields.add(field);
+            }
+        }
+        indexes = new int[fields.size()];
+        values = new String[fields.size()];
+        for (int i = 0; i < fields.size(); i++) {
+            indexes[i] = fields.get(i).getIndex();
+            values[i] = fields.get(i).getValue();
+        }
+    }
+
+    @Benchmark
+    public Message decodeBytes() {
+        return decoder.decodeWithMsgLength(frame);
+    }
+
+    @Benchmark
+    public Message decodeHex() {
+        return decoder.decode(hex, true);
+    }
+
+    @Benchmark
+    public byte[] encodeAndGetBytes() {
+        encoder.reset();
+        for (int i = 0; i < indexes.length; i++) {
+            encoder.setField(indexes[i], values[i]);
+        }
+        return encoder.encode().getBytes();
+    }
+
+    @Benchmark
+    public byte[] updateValueAndGetBytes() {
+        toggle = !toggle;
+        message.updateValue(F11, toggle ? "000001" : "000002");
+        return message.getBytes();
+    }
+
+    @Benchmark
+    public byte[] getMacBlock() {
+        return message.getMacBlock();
+    }
+}
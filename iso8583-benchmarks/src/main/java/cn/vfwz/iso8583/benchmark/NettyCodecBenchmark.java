@@ -0,0 +1,103 @@
+package cn.vfwz.iso8583.benchmark;
+
+import cn.vfwz.iso8583.message.Message;
+import cn.vfwz.iso8583.message.MessageConfig;
+import cn.vfwz.iso8583.message.MessageDecoder;
+import cn.vfwz.iso8583.netty.Iso8583MessageDecoder;
+import cn.vfwz.iso8583.netty.Iso8583MessageEncoder;
+import cn.vfwz.iso8583.util.EncodeUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Netty编解码器吞吐量，与先转换为hex字符串再调用字符串接口的方式对比</p>
+ * <p>使用POS消费请求报文，ByteBuf为池化直接内存</p>
+ * <p>*Handler包括EmbeddedChannel的pipeline开销，encodeDirect只包括编码器写入ByteBuf的部分</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NettyCodecBenchmark {
+
+    private MessageDecoder messageDecoder;
+    private Message message;
+    private ByteBuf frame;
+    private EmbeddedChannel inbound;
+    private EmbeddedChannel outbound;
+
+    @Setup
+    public void setup() {
+        MessageConfig config = Samples.POS_PAY.config();
+        messageDecoder = new MessageDecoder(config);
+        message = Samples.POS_PAY.message(config);
+        byte[] bytes = message.getBytes();
+        frame = PooledByteBufAllocator.DEFAULT.directBuffer(bytes.length);
+        frame.writeBytes(bytes);
+        inbound = new EmbeddedChannel(new Iso8583MessageDecoder(config));
+        outbound = new EmbeddedChannel(new Iso8583MessageEncoder());
+    }
+
+    @TearDown
+    public void tearDown() {
+        frame.release();
+        inbound.finishAndReleaseAll();
+        outbound.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public Message decodeHexString() {
+        return messageDecoder.decode(ByteBufUtil.hexDump(frame), true);
+    }
+
+    @Benchmark
+    public Message decodeHandler() {
+        inbound.writeInbound(frame.retainedDuplicate());
+        return inbound.readInbound();
+    }
+
+    @Benchmark
+    public int encodeHexString() {
+        ByteBuf buf = Unpooled.wrappedBuffer(EncodeUtil.hex2Bytes(message.getHexString()));
+        int length = buf.readableBytes();
+        buf.release();
+        return length;
+    }
+
+    @Benchmark
+    public int encodeDirect() {
+        int length = message.getByteLength();
+        ByteBuf buf = PooledByteBufAllocator.DEFAULT.directBuffer(length);
+        message.writeTo(buf.nioBuffer(0, length));
+        buf.writerIndex(length);
+        buf.release();
+        return length;
+    }
+
+    @Benchmark
+    public int encodeHandler() {
+        outbound.writeOutbound(message);
+        ByteBuf buf = outbound.readOutbound();
+        int length = buf.readableBytes();
+        buf.release();
+        return length;
+    }
+}
@@ -0,0 +1,100 @@
+package cn.vfwz.iso8583.benchmark;
+
+import cn.vfwz.iso8583.message.DefaultMessageConfig;
+import cn.vfwz.iso8583.message.Message;
+import cn.vfwz.iso8583.message.MessageConfig;
+import cn.vfwz.iso8583.message.MessageDecoder;
+import cn.vfwz.iso8583.message.MessageEncoder;
+import cn.vfwz.iso8583.message.field.VariableFieldType;
+
+import static cn.vfwz.iso8583.constant.FieldIndex.*;
+import static cn.vfwz.iso8583.enumeration.FieldLengthType.LLLVAR;
+import static cn.vfwz.iso8583.enumeration.FieldValueType.ASCII;
+
+/**
+ * <p>基准测试使用的报文样本及配置，POS报文取自单元测试中的真实报文(不带长度部分的hex)</p>
+ */
+public enum Samples {
+
+    /**
+     * POS签到请求
+     */
+    POS_SIGNIN("600003000060310031010008000020000000C408120000783130303136393139383433323930303435383230303042004750493034323034303230323035313430303030323430323130363837303030303030313038303856302E302E332E30040000000000000000110000072600500003303120"),
+    /**
+     * POS消费请求
+     */
+    POS_PAY("60000300006031003101000200703C06C000C49A1716622424230000006900000000000000111100007914155408242903071000000012313030313639313938343332393030343538323030304200695049303634303430323032303531343030303032343032313036383730303030303031303630363030303036393037303844333930334633393038303856302E302E332E303135360000000000000000241000000000000001459F260846FD62985CAAE7589F2701809F101307011703A00000010A0100000500001EF41C469F37049536C9B89F36020C66950500000000009A032208249C01009F02060000000011115F2A02015682027C009F1A0201569F03060000000000009F330360E9C89F34030000009F3501229F1E0831323334353637388408A0000003330101029F090200309F4104000000010013220007270006000024FF02213436307C30307C32383638387C34333232323834390021534D303136CDC489E91786D0BE01F543D813611BCD3833353932373435"),
+    /**
+     * POS电子签名上送，62域较大
+     */
+    POS_SIGN_IMG("600003000060310031010009205022000008C00A151662242423000000690000000011110000790824583030303034303032373631313030313639313938343332393030343538323030304204000000000000000050FF001ABAD3C4CFCAA1D2F8C2A1D0C5CFA2BCBCCAF5D3D0CFDEB9ABCBBEFF0104CFFBB7D1FF020101FF0607202208241415560008070007270126000001000000008000000040000000807F0000481CB93FCFF8E273061BDF301D76CB6869AEE9705A37872F81613C17DADB45AE6006D1C45C20399538F24115D37CA710009388652D49B88EA3FB843D29684CA53982D5AE3A1EA03191299C498B9F39DDA2825D982FD5C2312A115EFD6248CA1D9D8F140FB3AF676970FF023542334236433246"),
+    /**
+     * 银联128域消费请求，由unionPayMessage()组装
+     */
+    UNION_PAY(null);
+
+    private final String hex;
+
+    Samples(String hex) {
+        this.hex = hex;
+    }
+
+    public MessageConfig config() {
+        MessageConfig config;
+        if (this == UNION_PAY) {
+            config = DefaultMessageConfig.produceUnion();
+        } else {
+            config = DefaultMessageConfig.produce();
+            config.set(new VariableFieldType(F59, LLLVAR, ASCII)); // 59域是TLV应该直接存HEX的，多转了一道
+        }
+        config.freeze();
+        return config;
+    }
+
+    /**
+     * 解析或组装样本报文
+     */
+    public Message message(MessageConfig config) {
+        return hex == null ? unionPayMessage(config) : new MessageDecoder(config).decode(hex);
+    }
+
+    private static Message unionPayMessage(MessageConfig config) {
+        return new MessageEncoder(config)
+                .setField(HEADER_LENGTH, "2E")
+                .setField(HEADER_FLAG_AND_VERSION, "02")
+                .setField(DESTINATION_ID, "00010000   ")
+                .setField(SOURCE_ID, "48430000   ")
+                .setField(RESERVERD, "000")
+                .setField(BATCH_NUMBER, "00")
+                .setField(TRANS_INFO, "00000000")
+                .setField(USER_INFO, "0")
+                .setField(REJECT_CODE, "00000")
+                .setField(MTI, "0200")
+                .setField(F2, "6224242300000069")
+                .setField(F3, "000000")
+                .setField(F4, "000000001111")
+                .setField(F7, "1018134900")
+                .setField(F11, "123456")
+                .setField(F12, "134900")
+                .setField(F13, "1018")
+                .setField(F14, "3012")
+                .setField(F18, "5411")
+                .setField(F22, "051")
+                .setField(F23, "001")
+                .setField(F25, "00")
+                .setField(F32, "48430000")
+                .setField(F33, "48430000")
+                .setField(F35, "6224242300000069D30122011234567890")
+                .setField(F37, "101813490012")
+                .setField(F41, "10016919")
+                .setField(F42, "843290045820030")
+                .setField(F43, "ABC MERCHANT                   SHANGHAI ")
+                .setField(F49, "156")
+                .setField(F52, "0123456789ABCDEF")
+                .setField(F53, "2600000000000000")
+                .setField(F55, "9F2608A1B2C3D4E5F607189F2701809F101307010103A0A000010A010000000000C1D2E3F49F3704123456789F36020001950500000000009A032610189C01009F02060000000011115F2A02015682027C009F1A0201569F03060000000000009F3303E0F1C8")
+                .setField(F60, "00000000030000000000")
+                .setField(F128, "12345678")
+                .encode();
+    }
+}
@@ -0,0 +1,73 @@
+package cn.vfwz.iso8583.netty;
+
+import cn.vfwz.iso8583.exception.Iso8583Exception;
+import cn.vfwz.iso8583.message.FieldSet;
+import cn.vfwz.iso8583.message.FrameDecoder;
+import cn.vfwz.iso8583.message.Message;
+import cn.vfwz.iso8583.message.MessageConfig;
+import cn.vfwz.iso8583.message.MessageDecoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * <p>按报文长度域从ByteBuf中切分报文，并直接从ByteBuf的内存解析为Message，不经过byte[]及hex字符串</p>
+ * <p>POS报文按开头的长度部分切分，银联报文按报文头中的长度切分，由MessageConfig中的TOTAL_MESSAGE_LENGTH域决定</p>
+ * <p>解析出的Message不引用ByteBuf，ByteBuf可以正常释放</p>
+ * <p>报文长度非法时抛出异常，连接中的后续数据已无法切分，一般应关闭连接</p>
+ * <p>每个连接使用一个实例，不可共享</p>
+ */
+public class Iso8583MessageDecoder extends ByteToMessageDecoder {
+
+    private final FrameDecoder frameDecoder;
+    private final MessageDecoder messageDecoder;
+    /**
+     * 只解析的域，为null时解析所有域
+     */
+    private final FieldSet projection;
+
+    public Iso8583MessageDecoder(MessageConfig messageConfig) {
+        this(messageConfig, -1, null);
+    }
+
+    public Iso8583MessageDecoder(MessageConfig messageConfig, int maxFrameLength) {
+        this(messageConfig, maxFrameLength, null);
+    }
+
+    /**
+     * @param messageConfig  冻结后的报文配置，可在多个连接之间共享
+     * @param maxFrameLength 允许的最大报文字节数(包括长度部分)，小于等于0时使用长度域可以表示的最大值
+     * @param projection     只解析的域，为null时解析所有域
+     */
+    public Iso8583MessageDecoder(MessageConfig messageConfig, int maxFrameLength, FieldSet projection) {
+        if (!messageConfig.isFrozen()) {
+            throw new Iso8583Exception("Iso8583MessageDecoder需要使用冻结后的MessageConfig，请先调用freeze()");
+        }
+        this.frameDecoder = new FrameDecoder(messageConfig, maxFrameLength);
+        this.messageDecoder = new MessageDecoder(messageConfig);
+        this.projection = projection;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+        int headerLength = frameDecoder.getHeaderLength();
+        int readable = in.readableBytes();
+        if (readable < headerLength) {
+            return;
+        }
+        int start = in.readerIndex();
+        int frameLength = frameDecoder.frameLength(in.nioBuffer(start, headerLength), 0, headerLength);
+        if (readable < frameLength) {
+            return;
+        }
+        ByteBuffer frame = in.nioBuffer(start, frameLength);
+        Message message = projection == null
+                ? messageDecoder.decode(frame, true)
+                : messageDecoder.decode(frame, true, projection);
+        in.skipBytes(frameLength);
+        out.add(message);
+    }
+}
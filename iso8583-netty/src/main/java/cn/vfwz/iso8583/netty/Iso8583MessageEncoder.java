@@ -0,0 +1,49 @@
+package cn.vfwz.iso8583.netty;
+
+import cn.vfwz.iso8583.message.Message;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToByteEncoder;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>将Message直接写入按报文长度分配的池化ByteBuf，包括长度部分及报文头，不经过byte[]及hex字符串</p>
+ * <p>不保存状态，可在多个连接之间共享</p>
+ */
+@ChannelHandler.Sharable
+public class Iso8583MessageEncoder extends MessageToByteEncoder<Message> {
+
+    public Iso8583MessageEncoder() {
+        super(Message.class);
+    }
+
+    /**
+     * @param preferDirect 是否优先使用直接内存
+     */
+    public Iso8583MessageEncoder(boolean preferDirect) {
+        super(Message.class, preferDirect);
+    }
+
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, Message msg, boolean preferDirect) {
+        int length = msg.getByteLength();
+        return preferDirect ? ctx.alloc().ioBuffer(length) : ctx.alloc().heapBuffer(length);
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, Message msg, ByteBuf out) {
+        int length = msg.getByteLength();
+        out.ensureWritable(length);
+        int writerIndex = out.writerIndex();
+        if (out.nioBufferCount() == 1) {
+            // 单块内存的ByteBuf，nioBuffer与ByteBuf共享内存，直接写入
+            ByteBuffer target = out.nioBuffer(writerIndex, length);
+            msg.writeTo(target);
+            out.writerIndex(writerIndex + length);
+        } else {
+            out.writeBytes(msg.getBytes());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package cn.vfwz.iso8583.netty;
+
+import cn.vfwz.iso8583.message.DefaultMessageConfig;
+import cn.vfwz.iso8583.message.MessageConfig;
+import cn.vfwz.iso8583.message.MessageEncoder;
+import cn.vfwz.iso8583.message.field.VariableFieldType;
+
+import static cn.vfwz.iso8583.constant.FieldIndex.*;
+import static cn.vfwz.iso8583.enumeration.FieldLengthType.LLLVAR;
+import static cn.vfwz.iso8583.enumeration.FieldValueType.ASCII;
+
+/**
+ * <p>编解码器测试使用的报文样本及配置，POS报文取自iso8583-parser单元测试中的真实报文(不带长度部分的hex)</p>
+ */
+final class CodecFixtures {
+
+    static final String SIGNIN_REQUEST = "600003000060310031010008000020000000C408120000783130303136393139383433323930303435383230303042004750493034323034303230323035313430303030323430323130363837303030303030313038303856302E302E332E30040000000000000000110000072600500003303120";
+    static final String PAY_REQUEST = "60000300006031003101000200703C06C000C49A1716622424230000006900000000000000111100007914155408242903071000000012313030313639313938343332393030343538323030304200695049303634303430323032303531343030303032343032313036383730303030303031303630363030303036393037303844333930334633393038303856302E302E332E303135360000000000000000241000000000000001459F260846FD62985CAAE7589F2701809F101307011703A00000010A0100000500001EF41C469F37049536C9B89F36020C66950500000000009A032208249C01009F02060000000011115F2A02015682027C009F1A0201569F03060000000000009F330360E9C89F34030000009F3501229F1E0831323334353637388408A0000003330101029F090200309F4104000000010013220007270006000024FF02213436307C30307C32383638387C34333232323834390021534D303136CDC489E91786D0BE01F543D813611BCD3833353932373435";
+
+    private CodecFixtures() {
+    }
+
+    /**
+     * 解析POS样本报文使用的冻结配置
+     */
+    static MessageConfig posConfig() {
+        MessageConfig config = DefaultMessageConfig.produce();
+        config.set(new VariableFieldType(F59, LLLVAR, ASCII)); // 59域是TLV应该直接存HEX的，多转了一道
+        config.freeze();
+        return config;
+    }
+
+    /**
+     * 冻结后的银联128域配置
+     */
+    static MessageConfig unionConfig() {
+        MessageConfig config = DefaultMessageConfig.produceUnion();
+        config.freeze();
+        return config;
+    }
+
+    /**
+     * 已设置银联报文头及MTI为0200的组装器，调用方继续设置其他域
+     */
+    static MessageEncoder unionEncoder(MessageConfig config) {
+        return new MessageEncoder(config)
+                .setField(HEADER_LENGTH, "2E")
+                .setField(HEADER_FLAG_AND_VERSION, "02")
+                .setField(DESTINATION_ID, "00010000   ")
+                .setField(SOURCE_ID, "48430000   ")
+                .setField(RESERVERD, "000")
+                .setField(BATCH_NUMBER, "00")
+                .setField(TRANS_INFO, "00000000")
+                .setField(USER_INFO, "0")
+                .setField(REJECT_CODE, "00000")
+                .setField(MTI, "0200");
+    }
+}
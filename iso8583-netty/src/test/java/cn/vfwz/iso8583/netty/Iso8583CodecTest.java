@@ -0,0 +1,159 @@
+package cn.vfwz.iso8583.netty;
+
+import cn.vfwz.iso8583.exception.Iso8583Exception;
+import cn.vfwz.iso8583.message.DefaultMessageConfig;
+import cn.vfwz.iso8583.message.FieldSet;
+import cn.vfwz.iso8583.message.Message;
+import cn.vfwz.iso8583.message.MessageConfig;
+import cn.vfwz.iso8583.message.MessageDecoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static cn.vfwz.iso8583.constant.FieldIndex.*;
+
+public class Iso8583CodecTest {
+
+    private static Message unionMessage(MessageConfig config, String stan) {
+        return CodecFixtures.unionEncoder(config)
+                .setField(F3, "000000")
+                .setField(F11, stan)
+                .encode();
+    }
+
+    private static ByteBuf directBuffer(byte[] bytes, int offset, int length) {
+        ByteBuf buf = PooledByteBufAllocator.DEFAULT.directBuffer(length);
+        buf.writeBytes(bytes, offset, length);
+        return buf;
+    }
+
+    @Test
+    public void decodeSplitFrames() {
+        MessageConfig config = CodecFixtures.posConfig();
+        MessageDecoder decoder = new MessageDecoder(config);
+        byte[] signin = decoder.decode(CodecFixtures.SIGNIN_REQUEST).getBytes();
+        byte[] pay = decoder.decode(CodecFixtures.PAY_REQUEST).getBytes();
+        byte[] stream = new byte[(signin.length + pay.length) * 10];
+        for (int i = 0, position = 0; i < 10; i++) {
+            System.arraycopy(signin, 0, stream, position, signin.length);
+            position += signin.length;
+            System.arraycopy(pay, 0, stream, position, pay.length);
+            position += pay.length;
+        }
+
+        Random random = new Random(8583);
+        EmbeddedChannel channel = new EmbeddedChannel(new Iso8583MessageDecoder(config));
+        int position = 0;
+        while (position < stream.length) {
+            // 包括1字节的分片，长度部分也会被拆开
+            int size = Math.min(stream.length - position, 1 + random.nextInt(300));
+            channel.writeInbound(directBuffer(stream, position, size));
+            position += size;
+        }
+        List<Message> messages = new ArrayList<>();
+        Message message;
+        while ((message = channel.readInbound()) != null) {
+            messages.add(message);
+        }
+        Assert.assertFalse(channel.finish());
+        Assert.assertEquals(20, messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            Assert.assertArrayEquals(i % 2 == 0 ? signin : pay, messages.get(i).getBytes());
+        }
+        Assert.assertEquals(decoder.decode(CodecFixtures.PAY_REQUEST).getValue(F4), messages.get(1).getValue(F4));
+    }
+
+    @Test
+    public void decodeMultipleFramesInOneBuffer() {
+        MessageConfig config = CodecFixtures.posConfig();
+        byte[] pay = new MessageDecoder(config).decode(CodecFixtures.PAY_REQUEST).getBytes();
+        EmbeddedChannel channel = new EmbeddedChannel(new Iso8583MessageDecoder(config));
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeBytes(pay).writeBytes(pay).writeBytes(pay, 0, 10);
+        channel.writeInbound(buf);
+        Assert.assertEquals(2, channel.inboundMessages().size());
+        // 剩余的半个报文补齐后输出
+        channel.writeInbound(Unpooled.wrappedBuffer(pay, 10, pay.length - 10));
+        Assert.assertEquals(3, channel.inboundMessages().size());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void decodeProjection() {
+        MessageConfig config = CodecFixtures.posConfig();
+        Message full = new MessageDecoder(config).decode(CodecFixtures.PAY_REQUEST);
+        EmbeddedChannel channel = new EmbeddedChannel(new Iso8583MessageDecoder(config, -1, FieldSet.of(F4, F41)));
+        channel.writeInbound(Unpooled.wrappedBuffer(full.getBytes()));
+        Message message = channel.readInbound();
+        Assert.assertEquals(full.getValue(F4), message.getValue(F4));
+        Assert.assertEquals(full.getValue(F41), message.getValue(F41));
+        Assert.assertNull(message.getField(F2));
+    }
+
+    @Test
+    public void encodeRoundTrip() {
+        MessageConfig config = CodecFixtures.posConfig();
+        Message pay = new MessageDecoder(config).decode(CodecFixtures.PAY_REQUEST);
+        EmbeddedChannel client = new EmbeddedChannel(new Iso8583MessageEncoder());
+        EmbeddedChannel server = new EmbeddedChannel(new Iso8583MessageDecoder(config));
+        Assert.assertTrue(client.writeOutbound(pay));
+        ByteBuf encoded = client.readOutbound();
+        Assert.assertArrayEquals(pay.getBytes(), ByteBufUtil.getBytes(encoded));
+        server.writeInbound(encoded);
+        Message received = server.readInbound();
+        Assert.assertArrayEquals(pay.getBytes(), received.getBytes());
+    }
+
+    @Test
+    public void unionRoundTrip() {
+        MessageConfig config = CodecFixtures.unionConfig();
+        Message first = unionMessage(config, "000001");
+        Message second = unionMessage(config, "000002");
+        // 银联报文头中的总长度是包括报文头在内的十进制ASCII
+        Assert.assertEquals(String.format("%04d", first.getByteLength()), first.getValue(TOTAL_MESSAGE_LENGTH));
+
+        EmbeddedChannel client = new EmbeddedChannel(new Iso8583MessageEncoder(false));
+        client.writeOutbound(first, second);
+        ByteBuf stream = Unpooled.buffer();
+        ByteBuf encoded;
+        while ((encoded = client.readOutbound()) != null) {
+            stream.writeBytes(encoded);
+            encoded.release();
+        }
+        EmbeddedChannel server = new EmbeddedChannel(new Iso8583MessageDecoder(config));
+        // 在报文头中间拆开
+        server.writeInbound(stream.readRetainedSlice(4));
+        Assert.assertTrue(server.inboundMessages().isEmpty());
+        server.writeInbound(stream);
+        Message received = server.readInbound();
+        Assert.assertEquals("000001", received.getValue(F11));
+        received = server.readInbound();
+        Assert.assertEquals("000002", received.getValue(F11));
+        Assert.assertArrayEquals(second.getBytes(), received.getBytes());
+    }
+
+    @Test
+    public void illegalLength() {
+        EmbeddedChannel channel = new EmbeddedChannel(new Iso8583MessageDecoder(CodecFixtures.posConfig(), 100));
+        try {
+            channel.writeInbound(Unpooled.wrappedBuffer(new byte[]{0x01, 0x00, 0x00}));
+            Assert.fail();
+        } catch (DecoderException e) {
+            Assert.assertTrue(e.getCause() instanceof Iso8583Exception);
+        }
+    }
+
+    @Test(expected = Iso8583Exception.class)
+    public void requireFrozenConfig() {
+        new Iso8583MessageDecoder(DefaultMessageConfig.produce());
+    }
+}
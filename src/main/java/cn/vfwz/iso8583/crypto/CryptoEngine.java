@@ -0,0 +1,51 @@
+package cn.vfwz.iso8583.crypto;
+
+/**
+ * <p>DES/3DES分组加解密引擎，ECB模式，不填充</p>
+ * <p>密钥8字节为DES；16字节为双倍长3DES(K1K2K1)；24字节为三倍长3DES</p>
+ * <p>实现需要线程安全</p>
+ */
+public interface CryptoEngine {
+
+    /**
+     * 分组字节数
+     */
+    int BLOCK_SIZE = 8;
+
+    /**
+     * 加密，length需要为8的倍数，src与dst可以是同一个数组
+     *
+     * @param key       密钥
+     * @param src       明文
+     * @param srcOffset 明文开始位置
+     * @param length    字节数
+     * @param dst       密文输出
+     * @param dstOffset 密文开始位置
+     */
+    void encrypt(byte[] key, byte[] src, int srcOffset, int length, byte[] dst, int dstOffset);
+
+    /**
+     * 解密，length需要为8的倍数，src与dst可以是同一个数组
+     *
+     * @param key       密钥
+     * @param src       密文
+     * @param srcOffset 密文开始位置
+     * @param length    字节数
+     * @param dst       明文输出
+     * @param dstOffset 明文开始位置
+     */
+    void decrypt(byte[] key, byte[] src, int srcOffset, int length, byte[] dst, int dstOffset);
+
+    /**
+     * <p>CBC模式加密，返回最后一个分组，不足8字节倍数时补0x00</p>
+     * <p>8字节密钥即ANSI X9.9 MAC</p>
+     *
+     * @param key    密钥
+     * @param iv     初始向量，8字节，为null时使用全0
+     * @param data   数据
+     * @param offset 数据开始位置
+     * @param length 数据字节数
+     * @return 8字节的最后一个密文分组
+     */
+    byte[] cbcMac(byte[] key, byte[] iv, byte[] data, int offset, int length);
+}
@@ -0,0 +1,113 @@
+package cn.vfwz.iso8583.crypto;
+
+import cn.vfwz.iso8583.exception.Iso8583Exception;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>基于javax.crypto的DES/DESede实现，线程安全</p>
+ * <p>按密钥字节缓存KeyHandle，同一密钥只初始化一次；缓存超出容量时淘汰最久未使用的密钥</p>
+ */
+public class JceCryptoEngine implements CryptoEngine {
+
+    public static final int DEFAULT_MAX_CACHED_KEYS = 256;
+
+    private final int maxCachedKeys;
+    private final ConcurrentHashMap<ByteBuffer, CachedKey> keyHandles = new ConcurrentHashMap<>();
+
+    public JceCryptoEngine() {
+        this(DEFAULT_MAX_CACHED_KEYS);
+    }
+
+    /**
+     * @param maxCachedKeys 最多缓存的密钥个数
+     */
+    public JceCryptoEngine(int maxCachedKeys) {
+        if (maxCachedKeys <= 0) {
+            throw new Iso8583Exception("maxCachedKeys[" + maxCachedKeys + "]需要大于0");
+        }
+        this.maxCachedKeys = maxCachedKeys;
+    }
+
+    /**
+     * 获取密钥对应的KeyHandle，不在缓存中时创建并缓存
+     *
+     * @param key 密钥，之后修改数组不影响已缓存的KeyHandle
+     * @return 可在多个线程之间共享的KeyHandle
+     */
+    public KeyHandle getKeyHandle(byte[] key) {
+        CachedKey cached = keyHandles.get(ByteBuffer.wrap(key));
+        if (cached != null) {
+            return cached.touch();
+        }
+        cached = new CachedKey(new KeyHandle(key));
+        ByteBuffer cacheKey = ByteBuffer.wrap(key.clone());
+        CachedKey existing = keyHandles.putIfAbsent(cacheKey, cached);
+        if (existing != null) {
+            return existing.touch();
+        }
+        // 插入后再淘汰，并发插入时也能回到容量以内
+        while (keyHandles.size() > maxCachedKeys) {
+            if (!evictEldest(cacheKey)) {
+                break;
+            }
+        }
+        return cached.handle;
+    }
+
+    /**
+     * 淘汰最久未使用的密钥，缓存容量不大，直接遍历
+     *
+     * @param keep 刚插入的密钥，不淘汰
+     * @return 是否淘汰了密钥
+     */
+    private boolean evictEldest(ByteBuffer keep) {
+        Map.Entry<ByteBuffer, CachedKey> eldest = null;
+        for (Map.Entry<ByteBuffer, CachedKey> entry : keyHandles.entrySet()) {
+            if (!entry.getKey().equals(keep)
+                    && (eldest == null || entry.getValue().lastAccess < eldest.getValue().lastAccess)) {
+                eldest = entry;
+            }
+        }
+        return eldest != null && keyHandles.remove(eldest.getKey(), eldest.getValue());
+    }
+
+    public int getCachedKeyCount() {
+        return keyHandles.size();
+    }
+
+    @Override
+    public void encrypt(byte[] key, byte[] src, int srcOffset, int length, byte[] dst, int dstOffset) {
+        getKeyHandle(key).encrypt(src, srcOffset, length, dst, dstOffset);
+    }
+
+    @Override
+    public void decrypt(byte[] key, byte[] src, int srcOffset, int length, byte[] dst, int dstOffset) {
+        getKeyHandle(key).decrypt(src, srcOffset, length, dst, dstOffset);
+    }
+
+    @Override
+    public byte[] cbcMac(byte[] key, byte[] iv, byte[] data, int offset, int length) {
+        return getKeyHandle(key).cbcMac(iv, data, offset, length);
+    }
+
+    /**
+     * 缓存的KeyHandle及最近一次使用的时间
+     */
+    private static final class CachedKey {
+
+        private final KeyHandle handle;
+        private volatile long lastAccess = System.nanoTime();
+
+        CachedKey(KeyHandle handle) {
+            this.handle = handle;
+        }
+
+        KeyHandle touch() {
+            lastAccess = System.nanoTime();
+            return handle;
+        }
+    }
+}
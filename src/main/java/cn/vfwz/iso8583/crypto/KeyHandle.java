@@ -0,0 +1,148 @@
+package cn.vfwz.iso8583.crypto;
+
+import cn.vfwz.iso8583.exception.Iso8583Exception;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * <p>预先初始化好的DES/3DES密钥，可在多个线程之间共享</p>
+ * <p>每个KeyHandle持有各自已init的加密、解密Cipher，借出使用后归还，密钥计划只在创建Cipher时计算一次，加解密不加锁；
+ * 池中Cipher的个数不超过同时使用该密钥的线程数，KeyHandle不再被引用(如被JceCryptoEngine淘汰)后一并回收</p>
+ */
+public final class KeyHandle {
+
+    private static final int BLOCK_SIZE = CryptoEngine.BLOCK_SIZE;
+
+    private final int keyLength;
+    private final String transformation;
+    private final SecretKeySpec secretKey;
+    private final Queue<Cipher> encryptCiphers = new ConcurrentLinkedQueue<>();
+    private final Queue<Cipher> decryptCiphers = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param key 8字节为DES；16字节为双倍长3DES(K1K2K1)；24字节为三倍长3DES
+     */
+    public KeyHandle(byte[] key) {
+        this.keyLength = key.length;
+        switch (key.length) {
+            case 8:
+                this.transformation = "DES/ECB/NoPadding";
+                this.secretKey = new SecretKeySpec(key, "DES");
+                break;
+            case 16:
+            case 24:
+                this.transformation = "DESede/ECB/NoPadding";
+                this.secretKey = new SecretKeySpec(tripleLengthKey(key), "DESede");
+                break;
+            default:
+                throw new Iso8583Exception("密钥长度[" + key.length + "]错误，需要8、16或24字节");
+        }
+        // 创建时即完成一个加密Cipher的初始化，密钥有问题时尽早失败
+        this.encryptCiphers.offer(newCipher(Cipher.ENCRYPT_MODE));
+    }
+
+    public int getKeyLength() {
+        return keyLength;
+    }
+
+    /**
+     * 加密，length需要为8的倍数，src与dst可以是同一个数组
+     */
+    public void encrypt(byte[] src, int srcOffset, int length, byte[] dst, int dstOffset) {
+        Cipher cipher = borrow(encryptCiphers, Cipher.ENCRYPT_MODE);
+        try {
+            process(cipher, src, srcOffset, length, dst, dstOffset);
+        } finally {
+            encryptCiphers.offer(cipher);
+        }
+    }
+
+    /**
+     * 解密，length需要为8的倍数，src与dst可以是同一个数组
+     */
+    public void decrypt(byte[] src, int srcOffset, int length, byte[] dst, int dstOffset) {
+        Cipher cipher = borrow(decryptCiphers, Cipher.DECRYPT_MODE);
+        try {
+            process(cipher, src, srcOffset, length, dst, dstOffset);
+        } finally {
+            decryptCiphers.offer(cipher);
+        }
+    }
+
+    /**
+     * CBC模式加密，返回最后一个分组，不足8字节倍数时补0x00
+     *
+     * @param iv     初始向量，8字节，为null时使用全0
+     * @param data   数据
+     * @param offset 数据开始位置
+     * @param length 数据字节数
+     * @return 8字节的最后一个密文分组
+     */
+    public byte[] cbcMac(byte[] iv, byte[] data, int offset, int length) {
+        if (iv != null && iv.length != BLOCK_SIZE) {
+            throw new Iso8583Exception("初始向量长度[" + iv.length + "]错误，需要8字节");
+        }
+        byte[] chain = iv == null ? new byte[BLOCK_SIZE] : iv.clone();
+        Cipher cipher = borrow(encryptCiphers, Cipher.ENCRYPT_MODE);
+        try {
+            int end = offset + length;
+            for (int position = offset; position < end; position += BLOCK_SIZE) {
+                int blockEnd = Math.min(position + BLOCK_SIZE, end);
+                for (int i = position; i < blockEnd; i++) {
+                    chain[i - position] ^= data[i];
+                }
+                // 不足8字节的部分补0，异或0不变
+                process(cipher, chain, 0, BLOCK_SIZE, chain, 0);
+            }
+        } finally {
+            encryptCiphers.offer(cipher);
+        }
+        return chain;
+    }
+
+    private void process(Cipher cipher, byte[] src, int srcOffset, int length, byte[] dst, int dstOffset) {
+        if (length % BLOCK_SIZE != 0) {
+            throw new Iso8583Exception("数据长度[" + length + "]不是8的倍数");
+        }
+        try {
+            cipher.doFinal(src, srcOffset, length, dst, dstOffset);
+        } catch (GeneralSecurityException e) {
+            throw new Iso8583Exception("加解密失败", e);
+        }
+    }
+
+    /**
+     * 从池中借出已初始化的Cipher，池中没有空闲的Cipher时新建，用完后需要归还
+     */
+    private Cipher borrow(Queue<Cipher> ciphers, int mode) {
+        Cipher cipher = ciphers.poll();
+        return cipher != null ? cipher : newCipher(mode);
+    }
+
+    private Cipher newCipher(int mode) {
+        try {
+            Cipher cipher = Cipher.getInstance(transformation);
+            cipher.init(mode, secretKey);
+            return cipher;
+        } catch (GeneralSecurityException e) {
+            throw new Iso8583Exception("初始化" + transformation + "失败", e);
+        }
+    }
+
+    /**
+     * 双倍长密钥K1K2扩展为K1K2K1
+     */
+    private static byte[] tripleLengthKey(byte[] key) {
+        if (key.length == 24) {
+            return key;
+        }
+        byte[] triple = new byte[24];
+        System.arraycopy(key, 0, triple, 0, 16);
+        System.arraycopy(key, 0, triple, 16, 8);
+        return triple;
+    }
+}
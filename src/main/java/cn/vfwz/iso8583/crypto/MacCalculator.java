@@ -0,0 +1,237 @@
+package cn.vfwz.iso8583.crypto;
+
+import cn.vfwz.iso8583.constant.FieldIndex;
+import cn.vfwz.iso8583.exception.Iso8583Exception;
+import cn.vfwz.iso8583.message.Bitmap;
+import cn.vfwz.iso8583.message.Message;
+import cn.vfwz.iso8583.message.MessageView;
+import cn.vfwz.iso8583.message.field.Field;
+import cn.vfwz.iso8583.util.MacUtil;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * <p>流式计算ANSI X9.9/X9.19 MAC，输入的数据逐块更新CBC链，不生成中间字符串</p>
+ * <p>可以直接输入Message的macBlock或接收到的报文中的macBlock区间，最后不足8字节的部分补0x00</p>
+ * <p>非线程安全，每个线程持有一个实例，doFinal()后自动重置可继续使用</p>
+ */
+public class MacCalculator {
+
+    private static final int BLOCK_SIZE = CryptoEngine.BLOCK_SIZE;
+
+    private final KeyHandle key;
+    /**
+     * X9.19最后一块的解密密钥，X9.9时为null
+     */
+    private final KeyHandle finalKey;
+    private final byte[] iv = new byte[BLOCK_SIZE];
+    private final byte[] chain = new byte[BLOCK_SIZE];
+    /**
+     * 当前块已异或的字节数
+     */
+    private int pending;
+    private final byte[] result = new byte[BLOCK_SIZE];
+    /**
+     * 写入Message的macBlock时使用的缓冲区
+     */
+    private byte[] scratch = new byte[512];
+
+    private MacCalculator(KeyHandle key, KeyHandle finalKey) {
+        if (key.getKeyLength() != 8 || (finalKey != null && finalKey.getKeyLength() != 8)) {
+            throw new Iso8583Exception("MAC计算需要8字节的DES密钥");
+        }
+        this.key = key;
+        this.finalKey = finalKey;
+    }
+
+    /**
+     * ANSI X9.9 MAC，密钥从MacUtil.getCryptoEngine()的密钥缓存中获取
+     *
+     * @param key 8字节密钥
+     */
+    public static MacCalculator x99(byte[] key) {
+        return new MacCalculator(cachedKeyHandle(key), null);
+    }
+
+    public static MacCalculator x99(KeyHandle key) {
+        return new MacCalculator(key, null);
+    }
+
+    /**
+     * ANSI X9.19 MAC，密钥从MacUtil.getCryptoEngine()的密钥缓存中获取
+     *
+     * @param key 16字节密钥，左半部分计算CBC，最后一块再以右半部分解密、左半部分加密
+     */
+    public static MacCalculator x919(byte[] key) {
+        if (key.length != 16) {
+            throw new Iso8583Exception("ANSI X9.19密钥长度[" + key.length + "]错误，需要16字节");
+        }
+        return new MacCalculator(cachedKeyHandle(Arrays.copyOfRange(key, 0, 8)), cachedKeyHandle(Arrays.copyOfRange(key, 8, 16)));
+    }
+
+    public static MacCalculator x919(KeyHandle left, KeyHandle right) {
+        return new MacCalculator(left, right);
+    }
+
+    /**
+     * 从当前加解密引擎的密钥缓存中获取KeyHandle
+     */
+    private static KeyHandle cachedKeyHandle(byte[] key) {
+        CryptoEngine engine = MacUtil.getCryptoEngine();
+        if (!(engine instanceof JceCryptoEngine)) {
+            throw new Iso8583Exception("当前加解密引擎不是JceCryptoEngine，请使用KeyHandle参数的方法");
+        }
+        return ((JceCryptoEngine) engine).getKeyHandle(key);
+    }
+
+    /**
+     * 设置初始向量并重置，之后每次reset()都使用该初始向量
+     *
+     * @param vector 8字节初始向量，为null时使用全0
+     */
+    public MacCalculator reset(byte[] vector) {
+        if (vector != null && vector.length != BLOCK_SIZE) {
+            throw new Iso8583Exception("初始向量长度[" + vector.length + "]错误，需要8字节");
+        }
+        if (vector == null) {
+            Arrays.fill(iv, (byte) 0);
+        } else {
+            System.arraycopy(vector, 0, iv, 0, BLOCK_SIZE);
+        }
+        return reset();
+    }
+
+    public MacCalculator reset() {
+        System.arraycopy(iv, 0, chain, 0, BLOCK_SIZE);
+        pending = 0;
+        return this;
+    }
+
+    public MacCalculator update(byte b) {
+        chain[pending++] ^= b;
+        if (pending == BLOCK_SIZE) {
+            encryptChain();
+        }
+        return this;
+    }
+
+    public MacCalculator update(byte[] data, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            chain[pending++] ^= data[i];
+            if (pending == BLOCK_SIZE) {
+                encryptChain();
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 输入缓冲区中的一段数据，不改变buffer的position
+     */
+    public MacCalculator update(ByteBuffer buffer, int offset, int length) {
+        if (buffer.hasArray()) {
+            return update(buffer.array(), buffer.arrayOffset() + offset, length);
+        }
+        for (int i = offset, end = offset + length; i < end; i++) {
+            chain[pending++] ^= buffer.get(i);
+            if (pending == BLOCK_SIZE) {
+                encryptChain();
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 输入报文的macBlock(MTI至63域)
+     */
+    public MacCalculator update(Message message) {
+        int length = message.getMacBlockLength();
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        message.writeMacBlockTo(scratch, 0);
+        return update(scratch, 0, length);
+    }
+
+    /**
+     * 输入接收到的报文中的macBlock区间，直接读取视图引用的缓冲区
+     */
+    public MacCalculator update(MessageView view) {
+        return update(view.getBuffer(), view.getMacBlockOffset(), view.getMacBlockLength());
+    }
+
+    /**
+     * 完成计算，将8字节MAC写入out并重置
+     */
+    public void doFinal(byte[] out, int offset) {
+        if (pending > 0) {
+            // 剩余部分补0，异或0不变
+            encryptChain();
+        }
+        if (finalKey != null) {
+            finalKey.decrypt(chain, 0, BLOCK_SIZE, chain, 0);
+            key.encrypt(chain, 0, BLOCK_SIZE, chain, 0);
+        }
+        System.arraycopy(chain, 0, out, offset, BLOCK_SIZE);
+        reset();
+    }
+
+    public byte[] doFinal() {
+        byte[] mac = new byte[BLOCK_SIZE];
+        doFinal(mac, 0);
+        return mac;
+    }
+
+    /**
+     * <p>组装报文并签名：将报文写入dst，以其中的macBlock计算MAC，写入MAC域的值部分</p>
+     * <p>报文中需要已设置8字节的MAC域(64域或128域)占位，签名结果只写入dst，不修改message</p>
+     *
+     * @param message 报文
+     * @param dst     目标数组
+     * @param offset  写入起始位置
+     * @return 写入的字节数
+     */
+    public int sign(Message message, byte[] dst, int offset) {
+        // MAC域是报文的最后一个域，有二次bitmap时为128域
+        int macIndex = message.getField(FieldIndex.F128) != null ? FieldIndex.F128 : FieldIndex.F64;
+        Field macField = message.getField(macIndex);
+        if (macField == null || macField.getByteLength() != BLOCK_SIZE) {
+            throw new Iso8583Exception("报文中需要先设置8字节的MAC域[" + macIndex + "]占位");
+        }
+        int length = message.writeTo(dst, offset);
+        reset();
+        update(dst, offset + message.getMacBlockOffset(), message.getMacBlockLength());
+        doFinal(dst, offset + length - BLOCK_SIZE);
+        return length;
+    }
+
+    /**
+     * 校验接收到的报文中的MAC域，MAC域不存在或不是8字节时返回false
+     */
+    public boolean verify(MessageView view) {
+        Bitmap bitmap = view.getBitmap();
+        if (bitmap == null) {
+            return false;
+        }
+        int macIndex = bitmap.getSize();
+        if (!view.isPresent(macIndex) || view.getValueByteLength(macIndex) != BLOCK_SIZE) {
+            return false;
+        }
+        reset();
+        update(view);
+        doFinal(result, 0);
+        ByteBuffer buffer = view.getBuffer();
+        int macOffset = view.getValueOffset(macIndex);
+        int diff = 0;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            diff |= result[i] ^ buffer.get(macOffset + i);
+        }
+        return diff == 0;
+    }
+
+    private void encryptChain() {
+        key.encrypt(chain, 0, BLOCK_SIZE, chain, 0);
+        pending = 0;
+    }
+}
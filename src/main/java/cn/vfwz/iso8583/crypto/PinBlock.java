@@ -0,0 +1,60 @@
+package cn.vfwz.iso8583.crypto;
+
+import cn.vfwz.iso8583.exception.Iso8583Exception;
+import cn.vfwz.iso8583.util.EncodeUtil;
+
+/**
+ * <p>加密后的8字节PIN block，如52域的值</p>
+ * <p>转加密时原地更新，可反复使用同一个实例</p>
+ */
+public final class PinBlock {
+
+    public static final int LENGTH = 8;
+
+    private final byte[] bytes = new byte[LENGTH];
+
+    public PinBlock() {
+    }
+
+    public PinBlock(byte[] bytes) {
+        set(bytes, 0);
+    }
+
+    public static PinBlock fromHex(String hex) {
+        if (hex.length() != LENGTH * 2) {
+            throw new Iso8583Exception("PIN block长度[" + hex.length() + "]错误，需要16个16进制字符");
+        }
+        PinBlock pinBlock = new PinBlock();
+        EncodeUtil.hex2Bytes(hex, 0, hex.length(), pinBlock.bytes, 0);
+        return pinBlock;
+    }
+
+    /**
+     * 从src的offset开始复制8字节
+     */
+    public PinBlock set(byte[] src, int offset) {
+        if (src.length - offset < LENGTH) {
+            throw new Iso8583Exception("PIN block需要8字节");
+        }
+        System.arraycopy(src, offset, bytes, 0, LENGTH);
+        return this;
+    }
+
+    /**
+     * 复制8字节到dst
+     *
+     * @return 复制的字节数
+     */
+    public int copyTo(byte[] dst, int offset) {
+        System.arraycopy(bytes, 0, dst, offset, LENGTH);
+        return LENGTH;
+    }
+
+    public byte[] getBytes() {
+        return bytes.clone();
+    }
+
+    public String toHex() {
+        return EncodeUtil.bytes2Hex(bytes);
+    }
+}
@@ -2,9 +2,8 @@ package cn.vfwz.iso8583.enumeration;
 
 import cn.vfwz.iso8583.exception.Iso8583Exception;
 import cn.vfwz.iso8583.util.EncodeUtil;
-import cn.vfwz.iso8583.util.StringUtil;
 
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
 
 /**
  * 域长部分类型
@@ -13,16 +12,39 @@ public enum FieldLengthType {
 
 
     // 定长
-    FIXED,
+    FIXED(0, 0),
 
     // BCD压缩的域长度部分
-    LLVAR,
-    LLLVAR,
-    LLLLVAR,
+    LLVAR(2, 2),
+    LLLVAR(4, 4),
+    LLLLVAR(6, 6),
 
     // ASCII表示的域长度部分
-    LLVAR_ASCII,
-    LLLVAR_ASCII;
+    LLVAR_ASCII(4, 2),
+    LLLVAR_ASCII(6, 3);
+
+    /**
+     * 长度部分占用的hex字符数量
+     */
+    private final int hexCount;
+    /**
+     * 长度部分可以表示的十进制位数
+     */
+    private final int digits;
+    /**
+     * 长度部分可以表示的最大长度
+     */
+    private final int maxLength;
+
+    FieldLengthType(int hexCount, int digits) {
+        this.hexCount = hexCount;
+        this.digits = digits;
+        int max = 1;
+        for (int i = 0; i < digits; i++) {
+            max *= 10;
+        }
+        this.maxLength = max - 1;
+    }
 
     /**
      * 根据域值长度计算域长部分的hex值
@@ -31,84 +53,208 @@ public enum FieldLengthType {
      * @return 域长部分的Hex值
      */
     public String encode(int valueLength) {
-        String lengthStr;
-        int hexCount = getHexCount();
+        // 固定长度域无需长度部分
+        if (this == FIXED) {
+            return "";
+        }
+        checkLength(valueLength);
+        // BCD长度部分的hex即十进制数字本身，ASCII长度部分每个数字为"3x"
+        char[] hex = new char[hexCount];
+        int remaining = valueLength;
+        boolean ascii = this == LLVAR_ASCII || this == LLLVAR_ASCII;
+        for (int i = hexCount - 1; i >= 0; i--) {
+            hex[i] = (char) ('0' + remaining % 10);
+            remaining /= 10;
+            if (ascii) {
+                hex[--i] = '3';
+            }
+        }
+        return new String(hex);
+    }
+
+    /**
+     * 将hex类型的域长度部分解析为实际长度值
+     */
+    public int decode(String lengthHex) {
+        return decode(EncodeUtil.hex2Bytes(lengthHex));
+    }
+
+    public int decode(byte[] lengthBytes) {
+        if (lengthBytes.length != getByteCount()) {
+            throw new Iso8583Exception("长度部分字节数[" + lengthBytes.length + "]与长度类型[" + this + "]不符");
+        }
+        return readLength(lengthBytes, 0);
+    }
+
+    /**
+     * 直接从字节数组中读取长度部分，按位计算长度值
+     *
+     * @param buf 报文数据
+     * @param off 长度部分开始位置
+     * @return 域值长度
+     */
+    public int readLength(byte[] buf, int off) {
+        int length = 0;
         switch (this) {
-            // 固定长度域无需长度部分
-            case FIXED:
-                return "";
-            // BCD编码
             case LLVAR:
             case LLLVAR:
             case LLLLVAR:
-                lengthStr = Integer.toString(valueLength);
-                if (lengthStr.length() > hexCount) {
-                    throw new Iso8583Exception("当前值长度[" + lengthStr + "]超过当前长度类型[" + this + "]范围");
+                for (int i = 0, count = getByteCount(); i < count; i++) {
+                    length = length * 100 + bcdByte(buf[off + i]);
                 }
-                return StringUtil.leftPad(lengthStr, hexCount, '0');
-            // ASCII编码
+                return length;
             case LLVAR_ASCII:
             case LLLVAR_ASCII:
-                lengthStr = Integer.toString(valueLength);
-                if (lengthStr.length() * 2 > hexCount) {
-                    throw new Iso8583Exception("当前值长度[" + lengthStr + "]超过当前长度类型[" + this + "]范围");
+                for (int i = 0; i < digits; i++) {
+                    length = length * 10 + asciiDigit(buf[off + i]);
                 }
-                lengthStr = StringUtil.leftPad(lengthStr, hexCount / 2, '0');
-                return EncodeUtil.bytes2Hex(lengthStr.getBytes(StandardCharsets.UTF_8));
+                return length;
             default:
-                throw new Iso8583Exception("暂不支持的长度类型[" + this + "]");
+                throw new Iso8583Exception("暂不支持的域长类型[" + this + "]");
         }
     }
 
     /**
-     * 将hex类型的域长度部分解析为实际长度值
+     * 直接从缓冲区的指定位置读取长度部分，不改变buffer的position
+     *
+     * @param buf 报文缓冲区
+     * @param off 长度部分开始位置
+     * @return 域值长度
      */
-    public int decode(String lengthHex) {
-        return decode(EncodeUtil.hex2Bytes(lengthHex));
-    }
-
-    public int decode(byte[] lengthBytes) {
+    public int readLength(ByteBuffer buf, int off) {
+        if (buf.hasArray()) {
+            return readLength(buf.array(), buf.arrayOffset() + off);
+        }
+        int length = 0;
         switch (this) {
             case LLVAR:
             case LLLVAR:
             case LLLLVAR:
-                return Integer.parseInt(EncodeUtil.bytes2Hex(lengthBytes));
+                for (int i = 0, count = getByteCount(); i < count; i++) {
+                    length = length * 100 + bcdByte(buf.get(off + i));
+                }
+                return length;
             case LLVAR_ASCII:
             case LLLVAR_ASCII:
-                return Integer.parseInt(new String(lengthBytes));
+                for (int i = 0; i < digits; i++) {
+                    length = length * 10 + asciiDigit(buf.get(off + i));
+                }
+                return length;
             default:
                 throw new Iso8583Exception("暂不支持的域长类型[" + this + "]");
         }
     }
 
-
     /**
-     * 获取当前长度类型占字节数量
+     * 将域值长度直接写入字节数组，按位计算各个数字，不足位数左补0
+     *
+     * @param buf 目标数组
+     * @param off 写入起始位置
+     * @param len 域值长度
+     * @return 写入的字节数
      */
-    public int getHexCount() {
-        int lengthBytesCount;
+    public int writeLength(byte[] buf, int off, int len) {
+        if (this == FIXED) {
+            return 0;
+        }
+        checkLength(len);
+        int count = getByteCount();
+        int remaining = len;
         switch (this) {
-            case FIXED:
-                lengthBytesCount = 0;
-                break;
             case LLVAR:
-                lengthBytesCount = 2;
-                break;
             case LLLVAR:
-                lengthBytesCount = 4;
-                break;
             case LLLLVAR:
-                lengthBytesCount = 6;
-                break;
+                for (int i = off + count - 1; i >= off; i--) {
+                    int low = remaining % 10;
+                    remaining /= 10;
+                    buf[i] = (byte) (((remaining % 10) << 4) | low);
+                    remaining /= 10;
+                }
+                return count;
             case LLVAR_ASCII:
-                lengthBytesCount = 4;
-                break;
             case LLLVAR_ASCII:
-                lengthBytesCount = 6;
-                break;
+                for (int i = off + count - 1; i >= off; i--) {
+                    buf[i] = (byte) ('0' + remaining % 10);
+                    remaining /= 10;
+                }
+                return count;
             default:
-                throw new Iso8583Exception("暂不支持的域长类型[" + this + "]");
+                throw new Iso8583Exception("暂不支持的长度类型[" + this + "]");
+        }
+    }
+
+    /**
+     * 将域值长度直接写入缓冲区的指定位置，不改变buffer的position
+     *
+     * @param buf 目标缓冲区
+     * @param off 写入起始位置
+     * @param len 域值长度
+     * @return 写入的字节数
+     */
+    public int writeLength(ByteBuffer buf, int off, int len) {
+        if (buf.hasArray()) {
+            return writeLength(buf.array(), buf.arrayOffset() + off, len);
+        }
+        if (this == FIXED) {
+            return 0;
+        }
+        checkLength(len);
+        int count = getByteCount();
+        int remaining = len;
+        boolean ascii = this == LLVAR_ASCII || this == LLLVAR_ASCII;
+        for (int i = off + count - 1; i >= off; i--) {
+            int low = remaining % 10;
+            remaining /= 10;
+            if (ascii) {
+                buf.put(i, (byte) ('0' + low));
+            } else {
+                buf.put(i, (byte) (((remaining % 10) << 4) | low));
+                remaining /= 10;
+            }
+        }
+        return count;
+    }
+
+    private void checkLength(int len) {
+        if (len < 0 || len > maxLength) {
+            throw new Iso8583Exception("当前值长度[" + len + "]超过当前长度类型[" + this + "]范围");
         }
-        return lengthBytesCount;
+    }
+
+    private int bcdByte(byte b) {
+        int high = (b >> 4) & 0x0F;
+        int low = b & 0x0F;
+        if (high > 9 || low > 9) {
+            throw new Iso8583Exception("长度部分[" + EncodeUtil.bytes2Hex(new byte[]{b}) + "]不是有效的BCD数字，长度类型[" + this + "]");
+        }
+        return high * 10 + low;
+    }
+
+    private int asciiDigit(byte b) {
+        if (b < '0' || b > '9') {
+            throw new Iso8583Exception("长度部分[" + EncodeUtil.bytes2Hex(new byte[]{b}) + "]不是有效的ASCII数字，长度类型[" + this + "]");
+        }
+        return b - '0';
+    }
+
+    /**
+     * 获取当前长度类型占字节数量
+     */
+    public int getHexCount() {
+        return hexCount;
+    }
+
+    /**
+     * 长度部分占用的字节数
+     */
+    public int getByteCount() {
+        return hexCount / 2;
+    }
+
+    /**
+     * 当前长度类型可以表示的最大域值长度
+     */
+    public int getMaxLength() {
+        return maxLength;
     }
 }
@@ -1,9 +1,11 @@
 package cn.vfwz.iso8583.enumeration;
 
 import cn.vfwz.iso8583.exception.Iso8583Exception;
+import cn.vfwz.iso8583.util.CharsetUtil;
 import cn.vfwz.iso8583.util.EncodeUtil;
 import lombok.extern.slf4j.Slf4j;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 
 /**
@@ -40,16 +42,34 @@ public enum FieldValueType {
      * @return hex格式的域值部分
      */
     public String encode(String data, int dataLength, AlignType alignType, char padChar, Charset charset) {
+        return encode(data, dataLength, alignType, getPadHex(padChar, charset), charset);
+    }
+
+    /**
+     * 将域值按当前格式获得域值的Hex表示，使用预先计算好的填充字符hex
+     *
+     * @param data       域值
+     * @param dataLength 域长，定长域需要对齐填充
+     * @param alignType  对齐方式
+     * @param padHex     填充字符在当前类型下的hex形式
+     * @param charset    编码方式
+     * @return hex格式的域值部分
+     */
+    public String encode(String data, int dataLength, AlignType alignType, String padHex, Charset charset) {
         if (data == null) {
             return data;
         }
         int targetHexLength = getHexCount(dataLength, alignType);
         String hexData = getHexData(data, charset);
 
-        return pad(hexData, targetHexLength, alignType, padChar, charset);
+        return pad(hexData, targetHexLength, alignType, padHex);
     }
 
     public String pad(String hexData, int targetHexLength, AlignType alignType, char padChar, Charset charset) {
+        return pad(hexData, targetHexLength, alignType, getPadHex(padChar, charset));
+    }
+
+    public String pad(String hexData, int targetHexLength, AlignType alignType, String padHex) {
         String valueHex;
         if (hexData.length() > targetHexLength) {
             log.error("注入的值[{}]长度超过目标长度[{}]", hexData, targetHexLength);
@@ -57,23 +77,34 @@ public enum FieldValueType {
         } else if (hexData.length() == targetHexLength) { // 长度符合，无需填充
             valueHex = hexData;
         } else { // (hexData.length() < targetHexLength) {
-            log.debug("域数据类型[{}], 当前值hex形式长度[{}]与目标长度[{}]不一致，根据填充方案alignType[{}], padChar[{}]进行填充",
+            log.debug("域数据类型[{}], 当前值hex形式长度[{}]与目标长度[{}]不一致，根据填充方案alignType[{}], padHex[{}]进行填充",
                     this, hexData.length(), targetHexLength,
-                    alignType, padChar);
-            String c = String.valueOf(padChar);
-            // 字符类型域转换时直接拼接字面字符
-            if (this == ASCII) {
-                c = EncodeUtil.bytes2Hex(c.getBytes(charset));
-            }
-            valueHex = alignType.pad(hexData, targetHexLength, c);
+                    alignType, padHex);
+            valueHex = alignType.pad(hexData, targetHexLength, padHex);
             if (valueHex.length() != targetHexLength) {
-                throw new Iso8583Exception("Hex域值[" + hexData + "]经过填充方案alignType[" + alignType + "], padChar[" + padChar + "]填充后，" +
+                throw new Iso8583Exception("Hex域值[" + hexData + "]经过填充方案alignType[" + alignType + "], padHex[" + padHex + "]填充后，" +
                         "结果[" + hexData + "长度超出预估值[" + targetHexLength + "]");
             }
         }
         return valueHex;
     }
 
+    /**
+     * 获取填充字符在当前类型下的hex形式
+     * 字符类型域转换时需按charset编码，其余类型直接拼接字面字符
+     *
+     * @param padChar 补充字符
+     * @param charset 编码方式
+     * @return 填充字符的hex形式
+     */
+    public String getPadHex(char padChar, Charset charset) {
+        String c = String.valueOf(padChar);
+        if (this == ASCII) {
+            c = EncodeUtil.bytes2Hex(CharsetUtil.encode(c, charset));
+        }
+        return c;
+    }
+
     /**
      * 解析hex格式的域值到实际域值
      *
@@ -94,7 +125,7 @@ public enum FieldValueType {
                 value = valueHex;
                 break;
             case ASCII:
-                value = new String(EncodeUtil.hex2Bytes(valueHex), charset);
+                value = CharsetUtil.decode(EncodeUtil.hex2Bytes(valueHex), charset);
                 break;
             default:
                 throw new Iso8583Exception("暂不支持的域值类型[" + this + "]");
@@ -102,6 +133,69 @@ public enum FieldValueType {
         return value;
     }
 
+    /**
+     * 解析字节形式的域值到实际域值
+     * ASCII类型直接使用字节按charset解码，其余类型与hex形式一致
+     *
+     * @param valueBytes  字节形式的域值
+     * @param valueHex    hex形式的域值
+     * @param valueLength 域长，BCD格式可能有对齐填充
+     * @param alignType   对齐方式
+     * @param charset     编码方式
+     * @return 实际域值
+     */
+    public String decode(byte[] valueBytes, String valueHex, int valueLength, AlignType alignType, Charset charset) {
+        if (this == ASCII) {
+            return CharsetUtil.decode(valueBytes, charset);
+        }
+        return decode(valueHex, valueLength, alignType, charset);
+    }
+
+    /**
+     * 解析字节形式的域值到实际域值，不需要hex形式时使用
+     *
+     * @param valueBytes  字节形式的域值
+     * @param valueLength 域长，BCD格式可能有对齐填充
+     * @param alignType   对齐方式
+     * @param charset     编码方式
+     * @return 实际域值
+     */
+    public String decode(byte[] valueBytes, int valueLength, AlignType alignType, Charset charset) {
+        if (this == ASCII) {
+            return CharsetUtil.decode(valueBytes, charset);
+        }
+        return decode(EncodeUtil.bytes2Hex(valueBytes), valueLength, alignType, charset);
+    }
+
+    /**
+     * 直接从缓冲区中的一段解析域值，不改变buffer的position
+     * ASCII类型直接在缓冲区上解码，不复制域值字节
+     *
+     * @param buffer      报文缓冲区
+     * @param offset      域值部分开始位置
+     * @param byteLength  域值部分占用的字节数
+     * @param valueLength 域长，BCD格式可能有对齐填充
+     * @param alignType   对齐方式
+     * @param charset     编码方式
+     * @return 实际域值
+     */
+    public String decode(ByteBuffer buffer, int offset, int byteLength, int valueLength, AlignType alignType, Charset charset) {
+        if (this == ASCII) {
+            return CharsetUtil.decode(buffer, offset, byteLength, charset);
+        }
+        String valueHex;
+        if (buffer.hasArray()) {
+            valueHex = EncodeUtil.bytes2Hex(buffer.array(), buffer.arrayOffset() + offset, byteLength);
+        } else {
+            byte[] valueBytes = new byte[byteLength];
+            for (int i = 0; i < byteLength; i++) {
+                valueBytes[i] = buffer.get(offset + i);
+            }
+            valueHex = EncodeUtil.bytes2Hex(valueBytes);
+        }
+        return decode(valueHex, valueLength, alignType, charset);
+    }
+
     /**
      * 获取域值在该类型下的长度
      *
@@ -114,7 +208,7 @@ public enum FieldValueType {
             case BCD:
                 return value.length();
             case ASCII:
-                return value.getBytes(charset).length;
+                return CharsetUtil.encodedLength(value, charset);
             case HEX:
                 return value.length() / 2;
             default:
@@ -165,7 +259,7 @@ public enum FieldValueType {
                 hexData = data;
                 break;
             case ASCII:
-                hexData = EncodeUtil.bytes2Hex(data.getBytes(charset));
+                hexData = EncodeUtil.bytes2Hex(CharsetUtil.encode(data, charset));
                 break;
             default:
                 throw new Iso8583Exception("暂不支持的域值类型[" + this + "]");
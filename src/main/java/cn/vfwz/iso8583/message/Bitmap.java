@@ -0,0 +1,226 @@
+package cn.vfwz.iso8583.message;
+
+import cn.vfwz.iso8583.exception.Iso8583Exception;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>报文位图，使用两个long保存64/128个域的存在标记</p>
+ * <p>第i域对应第(i-1)位，域1在第一个字节的最高位，与报文中的字节形式一致</p>
+ */
+public class Bitmap {
+
+    /**
+     * 位图支持的域数量，64或128
+     */
+    private final int size;
+    /**
+     * 第1~64域
+     */
+    private long low;
+    /**
+     * 第65~128域
+     */
+    private long high;
+
+    public Bitmap(int size) {
+        if (size != 64 && size != 128) {
+            throw new Iso8583Exception("暂不支持的位图长度:" + size);
+        }
+        this.size = size;
+    }
+
+    /**
+     * 根据报文中的位图字节创建位图，字节数为8或16
+     *
+     * @param bytes  报文数据
+     * @param offset 位图起始位置
+     * @param length 位图字节数
+     * @return 位图
+     */
+    public static Bitmap of(byte[] bytes, int offset, int length) {
+        Bitmap bitmap = new Bitmap(length * 8);
+        bitmap.read(bytes, offset);
+        return bitmap;
+    }
+
+    public static Bitmap of(byte[] bytes) {
+        return of(bytes, 0, bytes.length);
+    }
+
+    /**
+     * 从报文字节中读取位图，覆盖当前内容
+     *
+     * @param bytes  报文数据
+     * @param offset 位图起始位置
+     */
+    public void read(byte[] bytes, int offset) {
+        this.low = Long.reverse(readLong(bytes, offset));
+        this.high = size == 128 ? Long.reverse(readLong(bytes, offset + 8)) : 0L;
+    }
+
+    /**
+     * 从缓冲区的指定位置读取位图，覆盖当前内容，不改变buffer的position
+     *
+     * @param buffer 报文缓冲区
+     * @param offset 位图起始位置
+     */
+    public void read(ByteBuffer buffer, int offset) {
+        this.low = Long.reverse(readLong(buffer, offset));
+        this.high = size == 128 ? Long.reverse(readLong(buffer, offset + 8)) : 0L;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * 位图占用的字节数
+     */
+    public int getByteLength() {
+        return size / 8;
+    }
+
+    public void set(int index) {
+        checkIndex(index);
+        if (index <= 64) {
+            low |= 1L << (index - 1);
+        } else {
+            high |= 1L << (index - 65);
+        }
+    }
+
+    public void clear(int index) {
+        checkIndex(index);
+        if (index <= 64) {
+            low &= ~(1L << (index - 1));
+        } else {
+            high &= ~(1L << (index - 65));
+        }
+    }
+
+    /**
+     * 清空所有标记
+     */
+    public void clear() {
+        low = 0L;
+        high = 0L;
+    }
+
+    /**
+     * 判断域是否存在，超出位图范围的域返回false
+     */
+    public boolean test(int index) {
+        if (index < 1 || index > size) {
+            return false;
+        }
+        if (index <= 64) {
+            return (low & (1L << (index - 1))) != 0;
+        }
+        return (high & (1L << (index - 65))) != 0;
+    }
+
+    /**
+     * 获取不小于fromIndex的下一个存在的域索引，用于遍历存在的域
+     *
+     * @param fromIndex 起始域索引
+     * @return 域索引，没有时返回-1
+     */
+    public int nextSetBit(int fromIndex) {
+        int bit = Math.max(fromIndex, 1) - 1;
+        if (bit < 64) {
+            long word = low & (-1L << bit);
+            if (word != 0) {
+                return Long.numberOfTrailingZeros(word) + 1;
+            }
+            bit = 64;
+        }
+        if (bit < size) {
+            long word = high & (-1L << (bit - 64));
+            if (word != 0) {
+                return Long.numberOfTrailingZeros(word) + 65;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 存在的域数量
+     */
+    public int cardinality() {
+        return Long.bitCount(low) + Long.bitCount(high);
+    }
+
+    /**
+     * 将位图按报文格式写入字节数组
+     *
+     * @param dst    目标数组
+     * @param offset 写入起始位置
+     * @return 写入的字节数
+     */
+    public int writeTo(byte[] dst, int offset) {
+        writeLong(dst, offset, Long.reverse(low));
+        if (size == 128) {
+            writeLong(dst, offset + 8, Long.reverse(high));
+        }
+        return getByteLength();
+    }
+
+    /**
+     * 获取位图的字节形式，8或16字节
+     */
+    public byte[] toBytes() {
+        byte[] bytes = new byte[getByteLength()];
+        writeTo(bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * <p>返回位图的二进制表示</p>
+     * <p>返回值示例：0110000000111100000000001000000100001010110100001000110000010001</p>
+     */
+    public String toBitString() {
+        char[] chars = new char[size];
+        for (int i = 0; i < size; i++) {
+            chars[i] = test(i + 1) ? '1' : '0';
+        }
+        return new String(chars);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 1 || index > size) {
+            throw new Iso8583Exception("域索引[" + index + "]超出位图范围[" + size + "]");
+        }
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0L;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * 按大端读取，不依赖buffer设置的字节序
+     */
+    private static long readLong(ByteBuffer buffer, int offset) {
+        long value = 0L;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (buffer.get(offset + i) & 0xFF);
+        }
+        return value;
+    }
+
+    private static void writeLong(byte[] dst, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            dst[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Bitmap{" + toBitString() + '}';
+    }
+}
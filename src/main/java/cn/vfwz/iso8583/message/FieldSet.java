@@ -0,0 +1,75 @@
+package cn.vfwz.iso8583.message;
+
+import cn.vfwz.iso8583.constant.FieldIndex;
+import cn.vfwz.iso8583.exception.Iso8583Exception;
+
+/**
+ * <p>不可变的域索引集合，用于按需解析报文中的部分域</p>
+ * <p>支持MessageConfig.MIN_FIELD_INDEX到128之间的域索引，按位保存</p>
+ */
+public final class FieldSet {
+
+    private static final int MAX_FIELD_INDEX = FieldIndex.F128;
+    private static final int SLOTS = MAX_FIELD_INDEX - MessageConfig.MIN_FIELD_INDEX + 1;
+
+    private final long[] words = new long[(SLOTS + 63) / 64];
+    private final int size;
+
+    private FieldSet(int[] indexes) {
+        int count = 0;
+        for (int index : indexes) {
+            if (index < MessageConfig.MIN_FIELD_INDEX || index > MAX_FIELD_INDEX) {
+                throw new Iso8583Exception("域索引[" + index + "]超出范围[" + MessageConfig.MIN_FIELD_INDEX + ", " + MAX_FIELD_INDEX + "]");
+            }
+            int slot = index - MessageConfig.MIN_FIELD_INDEX;
+            long mask = 1L << slot;
+            if ((words[slot >>> 6] & mask) == 0) {
+                words[slot >>> 6] |= mask;
+                count++;
+            }
+        }
+        this.size = count;
+    }
+
+    /**
+     * 根据域索引创建集合，重复的索引只计一次
+     *
+     * @param indexes 域索引，如FieldIndex.F2
+     * @return 域索引集合
+     */
+    public static FieldSet of(int... indexes) {
+        return new FieldSet(indexes);
+    }
+
+    public boolean contains(int index) {
+        if (index < MessageConfig.MIN_FIELD_INDEX || index > MAX_FIELD_INDEX) {
+            return false;
+        }
+        int slot = index - MessageConfig.MIN_FIELD_INDEX;
+        return (words[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("FieldSet{");
+        boolean first = true;
+        for (int index = MessageConfig.MIN_FIELD_INDEX; index <= MAX_FIELD_INDEX; index++) {
+            if (contains(index)) {
+                if (!first) {
+                    sb.append(", ");
+                }
+                sb.append(index);
+                first = false;
+            }
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,309 @@
+package cn.vfwz.iso8583.message;
+
+import cn.vfwz.iso8583.constant.FieldIndex;
+import cn.vfwz.iso8583.enumeration.FieldValueType;
+import cn.vfwz.iso8583.exception.Iso8583Exception;
+import cn.vfwz.iso8583.message.field.FieldType;
+import cn.vfwz.iso8583.message.field.FixedFieldType;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.List;
+
+/**
+ * <p>按报文长度域从TCP字节流中切分出完整报文</p>
+ * <p>长度域的位置、字节数及编码方式由MessageConfig中TOTAL_MESSAGE_LENGTH域的配置决定：</p>
+ * <p>POS报文长度域在报文开头，不包括长度域本身；银联128域报文长度域在报文头中，包括整个报文</p>
+ * <p>输出的报文切片包括长度部分，可直接用于decodeWithMsgLength()或MessageView</p>
+ * <p>切片引用输入数据或内部缓冲区，只在下一次调用feed()/read()之前有效，需要保留时应复制或解析</p>
+ * <p>非线程安全，每个连接使用一个实例</p>
+ */
+public class FrameDecoder {
+
+    private static final int INITIAL_CAPACITY = 4096;
+
+    /**
+     * 长度域在报文中的开始位置
+     */
+    private final int lengthOffset;
+    /**
+     * 长度域占用的字节数
+     */
+    private final int lengthByteCount;
+    private final FieldValueType lengthValueType;
+    /**
+     * 长度值是否包括长度域及之前的部分
+     */
+    private final boolean lengthIncludesHeader;
+    private final int maxFrameLength;
+    /**
+     * 未能组成完整报文的数据，写模式下position为已有数据的结尾
+     */
+    private ByteBuffer cumulation;
+    /**
+     * 上一次输出的报文在cumulation中占用的字节数，下一次调用时才丢弃
+     */
+    private int consumed;
+
+    public FrameDecoder(MessageConfig messageConfig) {
+        this(messageConfig, -1);
+    }
+
+    /**
+     * @param messageConfig  报文配置，需要配置定长的TOTAL_MESSAGE_LENGTH域
+     * @param maxFrameLength 允许的最大报文字节数(包括长度部分)，小于等于0时使用长度域可以表示的最大值
+     */
+    public FrameDecoder(MessageConfig messageConfig, int maxFrameLength) {
+        FieldType lengthFieldType = messageConfig.getFieldTypeMute(FieldIndex.TOTAL_MESSAGE_LENGTH);
+        if (lengthFieldType == null) {
+            throw new Iso8583Exception("报文配置中没有报文长度域，无法切分报文");
+        }
+        if (!(lengthFieldType instanceof FixedFieldType) || !lengthFieldType.isByteAligned()) {
+            throw new Iso8583Exception("报文长度域必须是整字节的定长域");
+        }
+        int offset = 0;
+        for (FieldType fieldType : messageConfig.getFieldTypes()) {
+            if (fieldType.getFieldIndex() >= FieldIndex.TOTAL_MESSAGE_LENGTH) {
+                break;
+            }
+            // 长度域之前只能是定长域，才能确定长度域的位置
+            if (!(fieldType instanceof FixedFieldType) || !fieldType.isByteAligned()) {
+                throw new Iso8583Exception("报文长度域之前的域[" + fieldType.getFieldIndex() + "]不是整字节的定长域，无法确定长度域位置");
+            }
+            offset += byteCount((FixedFieldType) fieldType);
+        }
+        this.lengthOffset = offset;
+        this.lengthByteCount = byteCount((FixedFieldType) lengthFieldType);
+        this.lengthValueType = lengthFieldType.getFieldValueType();
+        // 银联报文长度域在报文头中，总长度包含长度域本身；其他报文长度域不包含在总长度中
+        this.lengthIncludesHeader = messageConfig.getFieldsCount() == 128;
+        int limit = maxLengthValue() + (lengthIncludesHeader ? 0 : getHeaderLength());
+        this.maxFrameLength = maxFrameLength > 0 ? Math.min(maxFrameLength, limit) : limit;
+    }
+
+    /**
+     * <p>计算缓冲区中从offset开始的报文的总字节数(包括长度部分)，不改变buffer的position</p>
+     *
+     * @param buffer    数据缓冲区
+     * @param offset    报文开始位置
+     * @param available 可读的字节数
+     * @return 报文总字节数，长度部分还不完整时返回-1
+     */
+    public int frameLength(ByteBuffer buffer, int offset, int available) {
+        if (available < getHeaderLength()) {
+            return -1;
+        }
+        int value = readLengthValue(buffer, offset + lengthOffset);
+        int frameLength = lengthIncludesHeader ? value : getHeaderLength() + value;
+        if (frameLength < getHeaderLength() || frameLength > maxFrameLength) {
+            throw new Iso8583Exception("报文长度[" + frameLength + "]非法，允许范围[" + getHeaderLength() + ", " + maxFrameLength + "]");
+        }
+        return frameLength;
+    }
+
+    /**
+     * <p>从缓冲区position到limit之间切分出所有完整的报文，不复制数据</p>
+     * <p>输出的切片直接引用buffer；position移动到最后一个完整报文的结尾，剩余的不完整数据留在buffer中</p>
+     *
+     * @param buffer 数据缓冲区
+     * @param out    输出的报文切片
+     * @return 切分出的报文数量
+     */
+    public int decode(ByteBuffer buffer, List<ByteBuffer> out) {
+        int count = 0;
+        int position = buffer.position();
+        int frameLength;
+        while ((frameLength = frameLength(buffer, position, buffer.limit() - position)) > 0
+                && frameLength <= buffer.limit() - position) {
+            out.add(slice(buffer, position, frameLength));
+            position += frameLength;
+            count++;
+        }
+        ((Buffer) buffer).position(position);
+        return count;
+    }
+
+    /**
+     * <p>输入一段接收到的数据，切分出所有已完整的报文</p>
+     * <p>没有残留数据时，chunk中的完整报文直接切片输出不复制；只有跨越多次输入的报文才复制到内部缓冲区</p>
+     * <p>chunk的position移动到limit，调用方在输出的切片使用完之前不能修改chunk</p>
+     *
+     * @param chunk 接收到的数据
+     * @param out   输出的报文切片
+     * @return 切分出的报文数量
+     */
+    public int feed(ByteBuffer chunk, List<ByteBuffer> out) {
+        discardConsumed();
+        int count = 0;
+        if (cumulation != null && cumulation.position() > 0) {
+            // 先用chunk补齐残留的报文
+            int needed = pendingFrameLength(chunk);
+            if (needed < 0 || cumulation.position() + chunk.remaining() < needed) {
+                appendToCumulation(chunk, chunk.remaining());
+                return 0;
+            }
+            appendToCumulation(chunk, needed - cumulation.position());
+            out.add(slice(cumulation, 0, needed));
+            consumed = needed;
+            count++;
+        }
+        count += decode(chunk, out);
+        if (chunk.hasRemaining()) {
+            appendToCumulation(chunk, chunk.remaining());
+        }
+        return count;
+    }
+
+    /**
+     * <p>从通道中读取一次数据，切分出所有已完整的报文</p>
+     * <p>输出的切片引用内部缓冲区，只在下一次调用之前有效</p>
+     *
+     * @param channel 数据通道，如SocketChannel
+     * @param out     输出的报文切片
+     * @return 切分出的报文数量，通道已关闭时返回-1
+     * @throws IOException 读取通道失败
+     */
+    public int read(ReadableByteChannel channel, List<ByteBuffer> out) throws IOException {
+        discardConsumed();
+        ensureCumulation(INITIAL_CAPACITY);
+        int pending = pendingFrameLength(null);
+        if (pending > cumulation.capacity()) {
+            ensureCumulation(pending);
+        } else if (!cumulation.hasRemaining()) {
+            ensureCumulation(cumulation.capacity() * 2);
+        }
+        int read = channel.read(cumulation);
+        if (read < 0) {
+            return -1;
+        }
+        ByteBuffer readable = cumulation.duplicate();
+        ((Buffer) readable).flip();
+        int count = decode(readable, out);
+        consumed = readable.position();
+        return count;
+    }
+
+    /**
+     * 内部缓冲区中是否还有不完整的报文数据，通道关闭时可用于判断报文是否被截断
+     */
+    public boolean hasPartialFrame() {
+        return cumulation != null && cumulation.position() > consumed;
+    }
+
+    /**
+     * 长度域及之前部分的字节数，即确定报文长度所需的最少字节数
+     */
+    public int getHeaderLength() {
+        return lengthOffset + lengthByteCount;
+    }
+
+    public int getMaxFrameLength() {
+        return maxFrameLength;
+    }
+
+    /**
+     * 丢弃上一次已输出的报文，将残留数据移动到缓冲区开头
+     */
+    private void discardConsumed() {
+        if (consumed > 0) {
+            ((Buffer) cumulation).flip();
+            ((Buffer) cumulation).position(consumed);
+            cumulation.compact();
+            consumed = 0;
+        }
+    }
+
+    /**
+     * 计算残留报文的总长度，长度部分不完整时借用chunk中的数据
+     *
+     * @return 报文总长度，数据不足以确定长度时返回-1
+     */
+    private int pendingFrameLength(ByteBuffer chunk) {
+        int buffered = cumulation.position();
+        if (buffered >= getHeaderLength()) {
+            return frameLength(cumulation, 0, buffered);
+        }
+        if (chunk == null || buffered + chunk.remaining() < getHeaderLength()) {
+            return -1;
+        }
+        appendToCumulation(chunk, getHeaderLength() - buffered);
+        return frameLength(cumulation, 0, getHeaderLength());
+    }
+
+    private void appendToCumulation(ByteBuffer chunk, int length) {
+        ensureCumulation(cumulation == null ? length : cumulation.position() + length);
+        ByteBuffer part = chunk.duplicate();
+        ((Buffer) part).limit(part.position() + length);
+        cumulation.put(part);
+        ((Buffer) chunk).position(chunk.position() + length);
+    }
+
+    private void ensureCumulation(int capacity) {
+        if (cumulation == null) {
+            cumulation = ByteBuffer.allocate(Math.max(capacity, INITIAL_CAPACITY));
+        } else if (cumulation.capacity() < capacity) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(capacity, cumulation.capacity() * 2));
+            ((Buffer) cumulation).flip();
+            larger.put(cumulation);
+            cumulation = larger;
+        }
+    }
+
+    private ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer frame = buffer.duplicate();
+        ((Buffer) frame).limit(offset + length);
+        ((Buffer) frame).position(offset);
+        return frame.slice();
+    }
+
+    /**
+     * 按长度域的值类型读取长度值，HEX为无符号大端整数，BCD及ASCII为十进制数字
+     */
+    private int readLengthValue(ByteBuffer buffer, int offset) {
+        int value = 0;
+        for (int i = 0; i < lengthByteCount; i++) {
+            int b = buffer.get(offset + i) & 0xFF;
+            switch (lengthValueType) {
+                case HEX:
+                    value = (value << 8) | b;
+                    break;
+                case BCD:
+                    if ((b >> 4) > 9 || (b & 0x0F) > 9) {
+                        throw new Iso8583Exception("报文长度域不是有效的BCD数字");
+                    }
+                    value = value * 100 + (b >> 4) * 10 + (b & 0x0F);
+                    break;
+                case ASCII:
+                    if (b < '0' || b > '9') {
+                        throw new Iso8583Exception("报文长度域不是有效的ASCII数字");
+                    }
+                    value = value * 10 + (b - '0');
+                    break;
+                default:
+                    throw new Iso8583Exception("暂不支持的域值类型[" + lengthValueType + "]");
+            }
+        }
+        return value;
+    }
+
+    /**
+     * 长度域可以表示的最大值
+     */
+    private int maxLengthValue() {
+        if (lengthValueType == FieldValueType.HEX) {
+            return (int) ((1L << Math.min(lengthByteCount * 8, 31)) - 1);
+        }
+        int digits = Math.min(lengthValueType == FieldValueType.BCD ? lengthByteCount * 2 : lengthByteCount, 9);
+        int max = 1;
+        for (int i = 0; i < digits; i++) {
+            max *= 10;
+        }
+        return max - 1;
+    }
+
+    private static int byteCount(FixedFieldType fieldType) {
+        return fieldType.getValueByteCount(fieldType.getDataLength());
+    }
+}
@@ -0,0 +1,163 @@
+package cn.vfwz.iso8583.message;
+
+import java.util.Arrays;
+
+/**
+ * <p>报文域偏移索引，记录一次扫描中各个存在的域在原始报文中的位置</p>
+ * <p>扫描只读取bitmap和长度部分，不生成域值，下标为域索引减去MessageConfig.MIN_FIELD_INDEX</p>
+ * <p>非线程安全，可通过reset()重复使用</p>
+ */
+public class FrameIndex {
+
+    /**
+     * 域开始位置(包括长度部分)，-1表示不存在
+     */
+    private final int[] offsets;
+    /**
+     * 域值部分开始位置
+     */
+    private final int[] valueOffsets;
+    /**
+     * 域值长度，即长度部分声明的长度
+     */
+    private final int[] valueLengths;
+    /**
+     * 域结束位置(不包含)
+     */
+    private final int[] ends;
+    /**
+     * 报文开始位置和结束位置(不包含)
+     */
+    private int start;
+    private int end;
+    /**
+     * 报文中的bitmap，没有bitmap域时为null
+     */
+    private Bitmap bitmap;
+    private boolean bitmapPresent;
+
+    public FrameIndex(MessageConfig messageConfig) {
+        int slots = messageConfig.getFieldsCount() - MessageConfig.MIN_FIELD_INDEX + 1;
+        this.offsets = new int[slots];
+        this.valueOffsets = new int[slots];
+        this.valueLengths = new int[slots];
+        this.ends = new int[slots];
+        reset(0);
+    }
+
+    /**
+     * 清空索引，准备记录新的报文
+     *
+     * @param start 报文开始位置
+     */
+    public void reset(int start) {
+        Arrays.fill(offsets, -1);
+        this.start = start;
+        this.end = start;
+        this.bitmapPresent = false;
+    }
+
+    /**
+     * 记录一个域的位置
+     */
+    void put(int index, int offset, int valueOffset, int valueLength, int end) {
+        int slot = index - MessageConfig.MIN_FIELD_INDEX;
+        offsets[slot] = offset;
+        valueOffsets[slot] = valueOffset;
+        valueLengths[slot] = valueLength;
+        ends[slot] = end;
+        this.end = Math.max(this.end, end);
+    }
+
+    /**
+     * 移除一个域的位置，移除后视为不存在
+     */
+    void remove(int index) {
+        if (isPresent(index)) {
+            offsets[index - MessageConfig.MIN_FIELD_INDEX] = -1;
+        }
+    }
+
+    /**
+     * 获取可复用的bitmap，长度不同时重新创建
+     */
+    Bitmap bitmap(int size) {
+        if (bitmap == null || bitmap.getSize() != size) {
+            bitmap = new Bitmap(size);
+        }
+        bitmapPresent = true;
+        return bitmap;
+    }
+
+    public boolean isPresent(int index) {
+        int slot = index - MessageConfig.MIN_FIELD_INDEX;
+        return slot >= 0 && slot < offsets.length && offsets[slot] >= 0;
+    }
+
+    /**
+     * 获取不小于fromIndex的下一个存在的域索引
+     *
+     * @param fromIndex 起始域索引
+     * @return 域索引，没有时返回Integer.MIN_VALUE
+     */
+    public int nextIndex(int fromIndex) {
+        for (int slot = Math.max(fromIndex - MessageConfig.MIN_FIELD_INDEX, 0); slot < offsets.length; slot++) {
+            if (offsets[slot] >= 0) {
+                return slot + MessageConfig.MIN_FIELD_INDEX;
+            }
+        }
+        return Integer.MIN_VALUE;
+    }
+
+    /**
+     * 域开始位置(包括长度部分)
+     */
+    public int getOffset(int index) {
+        return offsets[index - MessageConfig.MIN_FIELD_INDEX];
+    }
+
+    /**
+     * 域值部分开始位置
+     */
+    public int getValueOffset(int index) {
+        return valueOffsets[index - MessageConfig.MIN_FIELD_INDEX];
+    }
+
+    /**
+     * 域值长度，BCD为数字个数，HEX和ASCII为字节数
+     */
+    public int getValueLength(int index) {
+        return valueLengths[index - MessageConfig.MIN_FIELD_INDEX];
+    }
+
+    /**
+     * 域值部分占用的字节数
+     */
+    public int getValueByteLength(int index) {
+        int slot = index - MessageConfig.MIN_FIELD_INDEX;
+        return ends[slot] - valueOffsets[slot];
+    }
+
+    /**
+     * 域(包括长度部分)占用的字节数
+     */
+    public int getByteLength(int index) {
+        int slot = index - MessageConfig.MIN_FIELD_INDEX;
+        return ends[slot] - offsets[slot];
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    /**
+     * 报文中的bitmap，没有bitmap域时为null
+     */
+    public Bitmap getBitmap() {
+        return bitmapPresent ? bitmap : null;
+    }
+}
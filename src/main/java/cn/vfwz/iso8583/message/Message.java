@@ -1,14 +1,20 @@
 package cn.vfwz.iso8583.message;
 
 import cn.vfwz.iso8583.constant.FieldIndex;
+import cn.vfwz.iso8583.enumeration.FieldValueType;
+import cn.vfwz.iso8583.exception.Iso8583Exception;
 import cn.vfwz.iso8583.message.field.Field;
+import cn.vfwz.iso8583.message.field.FieldHolder;
 import cn.vfwz.iso8583.message.field.FieldType;
+import cn.vfwz.iso8583.message.field.FixedFieldType;
 import cn.vfwz.iso8583.util.EncodeUtil;
+import cn.vfwz.iso8583.util.StringUtil;
 import lombok.extern.slf4j.Slf4j;
 
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
 import java.util.Iterator;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.NoSuchElementException;
 
 
 @Slf4j
@@ -21,8 +27,38 @@ public class Message {
     /**
      * <p>当前报文所对应的一个bitmap 64/128 域规范由本身持有的factory.isBit128()方法决定</p>
      */
-    private final byte[] bitmap;
-    private Map<Integer, Field> fields = new TreeMap<>();
+    private final Bitmap bitmap;
+    /**
+     * 报文中的域，下标为域索引减去MessageConfig.MIN_FIELD_INDEX，按下标顺序即为报文顺序
+     */
+    private final Field[] fields;
+    /**
+     * bitmap域及报文长度域的配置，未配置时为null
+     */
+    private final FieldType bitmapFieldType;
+    private final FieldType msgLengthFieldType;
+    /**
+     * 除bitmap域和报文长度域以外所有域的字节数，随域的变动增量维护
+     */
+    private int dataByteLength;
+    /**
+     * bitmap域和报文长度域是否需要重新生成，延迟到序列化或读取时处理
+     */
+    private boolean dirty;
+    /**
+     * 延迟解析时的原始报文和域位置索引，非延迟解析的报文为null
+     * 索引中仍存在的域表示尚未生成域对象，生成后从索引中移除
+     */
+    private ByteBuffer source;
+    private FrameIndex frameIndex;
+    /**
+     * clear()后保留的位置索引，复用报文进行延迟解析时不再重新创建
+     */
+    private FrameIndex spareFrameIndex;
+    /**
+     * clear()后保留的域对象，按域索引排列，生成同一个域时复用；第一次clear()时创建
+     */
+    private Field[] spareFields;
 
     /**
      * <p>构造函数，需要一个Iso8583MessageFactory来约束报文解析规范</p>
@@ -30,63 +66,322 @@ public class Message {
      */
     protected Message(MessageConfig messageConfig) {
         this.messageConfig = messageConfig;
-        FieldType bitmapFieldType = messageConfig.getFieldTypeMute(FieldIndex.BITMAP);
+        this.bitmapFieldType = messageConfig.getFieldTypeMute(FieldIndex.BITMAP);
+        this.msgLengthFieldType = messageConfig.getFieldTypeMute(FieldIndex.TOTAL_MESSAGE_LENGTH);
+        this.fields = new Field[messageConfig.getFieldsCount() - MessageConfig.MIN_FIELD_INDEX + 1];
         if (bitmapFieldType != null) {
-            bitmap = new byte[messageConfig.getFieldsCount()];
+            bitmap = new Bitmap(messageConfig.getFieldsCount());
         } else {
-            bitmap = new byte[0];
+            bitmap = null;
+        }
+    }
+
+    /**
+     * 延迟解析的报文，域对象在第一次访问时根据索引从原始报文中生成
+     */
+    protected Message(MessageConfig messageConfig, ByteBuffer source, FrameIndex frameIndex) {
+        this(messageConfig);
+        load(source, frameIndex);
+    }
+
+    /**
+     * <p>清空报文中的所有域，恢复到刚创建时的状态，用于复用报文对象</p>
+     * <p>延迟解析时的位置索引及已生成的域对象会保留下来，之后解析、更新同一个域时复用，
+     * 因此clear()之前从报文中取得的Field不能再继续使用</p>
+     */
+    public void clear() {
+        for (int slot = 0; slot < fields.length; slot++) {
+            if (fields[slot] != null) {
+                if (spareFields == null) {
+                    spareFields = new Field[fields.length];
+                }
+                spareFields[slot] = fields[slot];
+                fields[slot] = null;
+            }
+        }
+        dataByteLength = 0;
+        if (bitmap != null) {
+            bitmap.clear();
+        }
+        dirty = false;
+        if (frameIndex != null) {
+            spareFrameIndex = frameIndex;
+        }
+        source = null;
+        frameIndex = null;
+    }
+
+    /**
+     * 获取可复用的位置索引，用于将报文扫描结果写入已清空的报文
+     */
+    FrameIndex reusableFrameIndex() {
+        if (spareFrameIndex == null) {
+            spareFrameIndex = new FrameIndex(messageConfig);
         }
+        return spareFrameIndex;
     }
 
-    protected void setFields(Map<Integer, Field> fields) {
+    /**
+     * 指向新的原始报文，域对象在第一次访问时根据索引生成，调用前需要先clear()
+     */
+    void load(ByteBuffer source, FrameIndex frameIndex) {
+        if (frameIndex == spareFrameIndex) {
+            spareFrameIndex = null;
+        }
+        this.source = source;
+        this.frameIndex = frameIndex;
+        for (int index = frameIndex.nextIndex(MessageConfig.MIN_FIELD_INDEX); index != Integer.MIN_VALUE;
+             index = frameIndex.nextIndex(index + 1)) {
+            if (isDerivedField(index)) {
+                continue;
+            }
+            dataByteLength += frameIndex.getByteLength(index);
+            if (bitmap != null && index >= 1) {
+                bitmap.set(index);
+            }
+        }
+        // 与完整解析一致，bitmap域和报文长度域按实际存在的域重新生成
+        dirty = true;
+    }
+
+    /**
+     * <p>使用按域索引排列的域设置报文，数组布局与当前报文一致</p>
+     * <p>报文持有域的副本(域值字符串共用)，传入的域之后被复用或修改不影响报文</p>
+     */
+    protected void setFields(Field[] fields) {
         // 根据新的fields 更新bitmap，msgLength等域
-        this.fields = fields;
+        clear();
+        for (int slot = 0; slot < this.fields.length; slot++) {
+            Field field = fields[slot];
+            if (field != null) {
+                this.fields[slot] = field.getFieldType().copyField(field, takeSpare(slot));
+                onFieldAdded(this.fields[slot]);
+            }
+        }
         refresh();
     }
 
+    /**
+     * 取出clear()后保留的域对象，没有时返回null
+     */
+    private Field takeSpare(int slot) {
+        if (spareFields == null) {
+            return null;
+        }
+        Field spare = spareFields[slot];
+        spareFields[slot] = null;
+        return spare;
+    }
+
+    private Field takeSpareOf(int index) {
+        int slot = index - MessageConfig.MIN_FIELD_INDEX;
+        return slot < 0 || slot >= fields.length ? null : takeSpare(slot);
+    }
+
     /**
      * Message的生成使用MessageBuilder
      * 更新指定域的值
      */
     public void updateValue(int index, String value) {
         FieldType type = messageConfig.getFieldType(index);
-        putField(type.encodeField(value));
-        refresh();
+        putField(type.encodeField(value, takeSpareOf(index)));
+    }
+
+    /**
+     * 使用字节形式的域值更新指定域，如TlvWriter组装的55域
+     *
+     * @param index      域索引
+     * @param valueBytes 域值部分的字节，不包括长度部分
+     * @param offset     开始位置
+     * @param length     字节数
+     */
+    public void updateValue(int index, byte[] valueBytes, int offset, int length) {
+        FieldType type = messageConfig.getFieldType(index);
+        putField(type.decodeField(valueBytes, offset, length));
     }
 
     public void removeField(int index) {
-        //将数据填入map，已处理填充位数据
-        if (fields.containsKey(index)) {
-            fields.remove(index);
-            refresh();
+        Field removed = fieldAt(index);
+        if (removed != null) {
+            fields[index - MessageConfig.MIN_FIELD_INDEX] = null;
+            onFieldRemoved(removed);
+        } else if (isLazyPresent(index)) {
+            onLazyFieldRemoved(index);
         } else {
-            log.info("当前报文中包含域[{}]", index);
+            log.info("当前报文中不包含域[{}]", index);
+        }
+    }
+
+    /**
+     * 设置域，并按变动的差值增量更新bitmap和报文长度，bitmap域和报文长度域延迟到使用时生成
+     */
+    void putField(Field field) {
+        int slot = field.getIndex() - MessageConfig.MIN_FIELD_INDEX;
+        if (slot < 0 || slot >= fields.length) {
+            throw new Iso8583Exception("域索引[" + field.getIndex() + "]超出报文域数量[" + messageConfig.getFieldsCount() + "]");
+        }
+        //将数据填入数组，已处理填充位数据
+        Field old = fields[slot];
+        fields[slot] = field;
+        if (old != null) {
+            onFieldRemoved(old);
+        } else if (isLazyPresent(field.getIndex())) {
+            onLazyFieldRemoved(field.getIndex());
+        }
+        onFieldAdded(field);
+    }
+
+    /**
+     * 获取已生成的域对象，超出范围的索引返回null
+     */
+    private Field fieldAt(int index) {
+        int slot = index - MessageConfig.MIN_FIELD_INDEX;
+        if (slot < 0 || slot >= fields.length) {
+            return null;
         }
+        return fields[slot];
     }
 
     /**
-     * 私有方法，只设置了域，在完成一系列设置后一定要调用refresh()方法
+     * 延迟解析的报文中，该域是否存在且尚未生成域对象
      */
-    private void putField(Field field) {
-        //将数据填入map，已处理填充位数据
-        fields.put(field.getIndex(), field);
+    private boolean isLazyPresent(int index) {
+        return frameIndex != null && frameIndex.isPresent(index);
+    }
+
+    /**
+     * 移除尚未生成域对象的域，直接使用索引中记录的长度
+     */
+    private void onLazyFieldRemoved(int index) {
+        if (!isDerivedField(index)) {
+            dataByteLength -= frameIndex.getByteLength(index);
+            if (bitmap != null && index >= 1) {
+                bitmap.clear(index);
+            }
+            dirty = true;
+        }
+        frameIndex.remove(index);
+    }
+
+    /**
+     * 获取域，延迟解析的域在此时从原始报文生成
+     */
+    private Field lookup(int index) {
+        Field field = fieldAt(index);
+        if (field == null && isLazyPresent(index)) {
+            int slot = index - MessageConfig.MIN_FIELD_INDEX;
+            field = messageConfig.getFieldType(index).decodeField(source, frameIndex.getOffset(index), takeSpare(slot));
+            fields[slot] = field;
+            frameIndex.remove(index);
+        }
+        return field;
+    }
+
+    /**
+     * 生成所有尚未生成的域对象，用于遍历所有域
+     */
+    private void materializeAll() {
+        if (frameIndex == null) {
+            return;
+        }
+        for (int index = frameIndex.nextIndex(MessageConfig.MIN_FIELD_INDEX); index != Integer.MIN_VALUE;
+             index = frameIndex.nextIndex(index + 1)) {
+            lookup(index);
+        }
+        this.source = null;
+        this.spareFrameIndex = this.frameIndex;
+        this.frameIndex = null;
+    }
+
+    /**
+     * 获取域占用的字节数，尚未生成的域直接使用索引中记录的长度
+     */
+    private int fieldByteLength(int index) {
+        Field field = fieldAt(index);
+        if (field != null) {
+            return field.getByteLength();
+        }
+        return isLazyPresent(index) ? frameIndex.getByteLength(index) : 0;
+    }
+
+    private void onFieldAdded(Field field) {
+        int index = field.getIndex();
+        if (isDerivedField(index)) {
+            return;
+        }
+        dataByteLength += field.getByteLength();
+        if (bitmap != null && index >= 1) {
+            bitmap.set(index);
+        }
+        dirty = true;
+    }
+
+    private void onFieldRemoved(Field field) {
+        int index = field.getIndex();
+        if (isDerivedField(index)) {
+            return;
+        }
+        dataByteLength -= field.getByteLength();
+        if (bitmap != null && index >= 1) {
+            bitmap.clear(index);
+        }
+        dirty = true;
+    }
+
+    /**
+     * bitmap域和报文长度域由其他域决定，不参与增量维护
+     */
+    private boolean isDerivedField(int index) {
+        return (index == FieldIndex.BITMAP && bitmapFieldType != null)
+                || (index == FieldIndex.TOTAL_MESSAGE_LENGTH && msgLengthFieldType != null);
     }
 
     public Iterator<Field> getFieldIterator() {
-        return fields.values().iterator();
+        materializeAll();
+        refreshIfDirty();
+        return new FieldIterator();
     }
 
     public Field getField(int index) {
-        return fields.get(index);
+        if (isDerivedField(index)) {
+            refreshIfDirty();
+        }
+        return lookup(index);
     }
 
 
+    /**
+     * <p>将域读取到调用方提供的可复用容器中</p>
+     * <p>延迟解析的报文直接复制原始字节，不生成域对象</p>
+     *
+     * @param index  域索引
+     * @param holder 可复用的域容器
+     * @return 域存在true，不存在false，不存在时容器被清空
+     */
+    public boolean getField(int index, FieldHolder holder) {
+        if (isDerivedField(index)) {
+            refreshIfDirty();
+        }
+        Field field = fieldAt(index);
+        if (field != null) {
+            holder.set(field);
+            return true;
+        }
+        if (isLazyPresent(index)) {
+            holder.set(messageConfig.getFieldType(index), frameIndex.getValueLength(index),
+                    source, frameIndex.getValueOffset(index), frameIndex.getValueByteLength(index));
+            return true;
+        }
+        holder.clear();
+        return false;
+    }
+
     /**
      * <p>获取报文中的某个域的值</p>
      * <p>不关注填充内容，获取到的结果值中不包含填充内容</p>
      */
     public String getValue(int index) {
-        Field field = fields.get(index);
+        Field field = getField(index);
         return field == null ? null : field.getValue();
     }
 
@@ -95,67 +390,110 @@ public class Message {
      * <p>返回值示例：0110000000111100000000001000000100001010110100001000110000010001</p>
      */
     public String getBitmapBitString() {
-        StringBuilder sb = new StringBuilder();
-        for (byte b : bitmap) {
-            sb.append(b);
-        }
-        return sb.toString();
+        return bitmap == null ? "" : bitmap.toBitString();
     }
 
     /**
      * <p>获取bitmap的字节数组内容</p>
      */
     public byte[] getBitmapBytes() {
-        return EncodeUtil.binary(getBitmapBitString());
+        return bitmap == null ? new byte[0] : bitmap.toBytes();
     }
 
     /**
-     * 报文域发生变动时，刷新bitMap和msgLength域
-     * 有些情况bitmap还未生成，需要需要先刷新bitmap
+     * <p>判断域是否在bitmap中标记为存在</p>
+     */
+    public boolean isPresent(int index) {
+        return bitmap != null && bitmap.test(index);
+    }
+
+    /**
+     * 报文域发生变动后，在读取或序列化之前重新生成bitmap域和msgLength域
+     */
+    private void refreshIfDirty() {
+        if (dirty) {
+            refresh();
+        }
+    }
+
+    /**
+     * 根据增量维护的bitmap和报文长度重新生成bitmap域和msgLength域
+     * bitmap需要先生成，报文长度包含bitmap域
      */
     private void refresh() {
         //位图标记
         refreshBitMap();
         refreshMsgLength();
+        dirty = false;
     }
 
     /**
-     * 当报文域发生变动时，需要刷新报文长度信息
+     * 根据增量维护的数据长度刷新报文长度信息
      */
     private void refreshMsgLength() {
-        int msgLength = 0;
-        for (Field field : fields.values()) {
-            // 非银联报文长度域不包含在总长度中
-            if (this.messageConfig.getFieldsCount() != 128 && field.getIndex() == FieldIndex.TOTAL_MESSAGE_LENGTH) {
-                continue;
-            }
-            msgLength += (field.getLengthHex().length() / 2 + field.getValueHex().length() / 2);
-        }
-        FieldType fieldType = this.messageConfig.getFieldTypeMute(FieldIndex.TOTAL_MESSAGE_LENGTH);
-        if (fieldType == null) {
+        if (msgLengthFieldType == null) {
             log.debug("未配置messageLength域，无需刷新");
-        } else {
-            Field msgLengthField = fieldType.encodeField(Integer.toHexString(msgLength));
-            this.putField(msgLengthField);
+            return;
+        }
+        int slot = FieldIndex.TOTAL_MESSAGE_LENGTH - MessageConfig.MIN_FIELD_INDEX;
+        fields[slot] = encodeMsgLengthField(fieldByteLength(FieldIndex.BITMAP), takeSpare(slot));
+        removeLazy(FieldIndex.TOTAL_MESSAGE_LENGTH);
+    }
+
+    /**
+     * 根据增量维护的数据长度生成报文长度域
+     *
+     * @param bitmapByteLength bitmap域的字节数
+     * @param reuse            可复用的域对象
+     */
+    private Field encodeMsgLengthField(int bitmapByteLength, Field reuse) {
+        int msgLength = dataByteLength + bitmapByteLength;
+        // 银联报文长度域在报文头中，总长度包含长度域本身；其他报文长度域不包含在总长度中
+        if (this.messageConfig.getFieldsCount() == 128) {
+            int current = fieldByteLength(FieldIndex.TOTAL_MESSAGE_LENGTH);
+            msgLength += current > 0 ? current
+                    : msgLengthFieldType.encodeField(msgLengthValue(msgLength)).getByteLength();
+        }
+        return msgLengthFieldType.encodeField(msgLengthValue(msgLength), reuse);
+    }
+
+    /**
+     * 报文长度的域值，HEX类型为十六进制，BCD及ASCII类型为十进制数字，定长时左补0
+     */
+    private String msgLengthValue(int msgLength) {
+        if (msgLengthFieldType.getFieldValueType() == FieldValueType.HEX) {
+            return Integer.toHexString(msgLength);
         }
+        String digits = Integer.toString(msgLength);
+        if (msgLengthFieldType instanceof FixedFieldType) {
+            digits = StringUtil.leftPad(digits, ((FixedFieldType) msgLengthFieldType).getDataLength(), '0');
+        }
+        return digits;
     }
 
     /**
-     * 当报文域发生变动时，需要刷新BitMap信息
+     * 根据增量维护的bitmap刷新bitmap域
      */
     private void refreshBitMap() {
-        FieldType fieldTypeMute = this.messageConfig.getFieldTypeMute(FieldIndex.BITMAP);
-        if (fieldTypeMute == null) {
+        if (bitmapFieldType == null) {
             log.debug("未配置bitmap域，无需刷新");
-        } else {
-            for (Field field : fields.values()) {
-                if (field.getIndex() < 1) {
-                    continue;
-                }
-                bitmap[field.getIndex() - 1] = 1;
-            }
-            Field bitMapField = fieldTypeMute.encodeField(EncodeUtil.bytes2Hex(getBitmapBytes()));
-            this.putField(bitMapField);
+            return;
+        }
+        int slot = FieldIndex.BITMAP - MessageConfig.MIN_FIELD_INDEX;
+        fields[slot] = encodeBitmapField(takeSpare(slot));
+        removeLazy(FieldIndex.BITMAP);
+    }
+
+    private Field encodeBitmapField(Field reuse) {
+        return bitmapFieldType.encodeField(EncodeUtil.bytes2Hex(getBitmapBytes()), reuse);
+    }
+
+    /**
+     * 重新生成的域覆盖延迟解析的原始字节
+     */
+    private void removeLazy(int index) {
+        if (isLazyPresent(index)) {
+            frameIndex.remove(index);
         }
     }
 
@@ -177,26 +515,141 @@ public class Message {
         StringBuilder sb = new StringBuilder();
         String format = "[F%s][%s][%s][%s][%s]\n";
 
-        for (Map.Entry<Integer, Field> entry : fields.entrySet()) {
-            sb.append(entry.getValue().toFormatString());
+        // 不修改报文：bitmap域和报文长度域需要刷新时临时生成，延迟解析的域临时从原始报文解析
+        Field bitmapField = null;
+        Field msgLengthField = null;
+        if (dirty) {
+            bitmapField = bitmapFieldType == null ? null : encodeBitmapField(null);
+            msgLengthField = msgLengthFieldType == null ? null
+                    : encodeMsgLengthField(bitmapField == null ? fieldByteLength(FieldIndex.BITMAP) : bitmapField.getByteLength(), null);
+        }
+        for (int slot = 0; slot < fields.length; slot++) {
+            int index = slot + MessageConfig.MIN_FIELD_INDEX;
+            Field field = fields[slot];
+            if (bitmapField != null && index == FieldIndex.BITMAP) {
+                field = bitmapField;
+            } else if (msgLengthField != null && index == FieldIndex.TOTAL_MESSAGE_LENGTH) {
+                field = msgLengthField;
+            } else if (field == null && isLazyPresent(index)) {
+                field = messageConfig.getFieldType(index).decodeField(source, frameIndex.getOffset(index));
+            }
+            if (field != null) {
+                sb.append(field.toFormatString());
+            }
         }
         return sb.toString();
     }
 
     /**
      * <p>解析报文协议，返回字节数组，用于应用间的消息的传输</p>
+     * <p>含半字节域的报文(如BCD不对齐的子域)各域无法单独按字节写入，按整体hex字符串转换</p>
      */
     public byte[] getBytes() {
-        return EncodeUtil.hex2Bytes(getHexString());
+        if (!messageConfig.isByteAligned()) {
+            return EncodeUtil.hex2Bytes(getHexString());
+        }
+        byte[] bytes = new byte[getByteLength()];
+        writeTo(bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * 获取当前报文序列化后占用的字节数
+     */
+    public int getByteLength() {
+        refreshIfDirty();
+        return dataByteLength + fieldByteLength(FieldIndex.BITMAP)
+                + fieldByteLength(FieldIndex.TOTAL_MESSAGE_LENGTH);
+    }
+
+    /**
+     * <p>将报文的长度部分、bitmap及各域值直接写入调用方提供的缓冲区</p>
+     * <p>从buffer当前position开始写入，写入完成后position移动到报文结尾，便于复用同一个缓冲区</p>
+     *
+     * @param buffer 目标缓冲区，支持堆内及直接内存
+     * @return 写入的字节数
+     */
+    public int writeTo(ByteBuffer buffer) {
+        int byteLength = getByteLength();
+        if (buffer.remaining() < byteLength) {
+            throw new Iso8583Exception("缓冲区剩余空间[" + buffer.remaining() + "]不足，报文需要[" + byteLength + "]字节");
+        }
+        if (frameIndex != null) {
+            writeLazyTo(buffer);
+            return byteLength;
+        }
+        for (Field field : fields) {
+            if (field != null) {
+                field.writeTo(buffer);
+            }
+        }
+        return byteLength;
+    }
+
+    /**
+     * 延迟解析的报文按配置顺序写入，尚未生成域对象的域直接复制原始字节
+     */
+    private void writeLazyTo(ByteBuffer buffer) {
+        for (FieldType fieldType : messageConfig.getFieldTypes()) {
+            int index = fieldType.getFieldIndex();
+            Field field = fieldAt(index);
+            if (field != null) {
+                field.writeTo(buffer);
+            } else if (frameIndex.isPresent(index)) {
+                copySource(frameIndex.getOffset(index), frameIndex.getByteLength(index), buffer);
+            }
+        }
+    }
+
+    private void copySource(int offset, int length, ByteBuffer buffer) {
+        if (source.hasArray() && buffer.hasArray()) {
+            System.arraycopy(source.array(), source.arrayOffset() + offset,
+                    buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+            ((Buffer) buffer).position(buffer.position() + length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                buffer.put(source.get(offset + i));
+            }
+        }
+    }
+
+    /**
+     * <p>将报文的长度部分、bitmap及各域值直接写入调用方提供的字节数组</p>
+     *
+     * @param dst    目标数组
+     * @param offset 写入起始位置
+     * @return 写入的字节数
+     */
+    public int writeTo(byte[] dst, int offset) {
+        int byteLength = getByteLength();
+        if (dst.length - offset < byteLength) {
+            throw new Iso8583Exception("数组剩余空间[" + (dst.length - offset) + "]不足，报文需要[" + byteLength + "]字节");
+        }
+        if (frameIndex != null) {
+            writeLazyTo(ByteBuffer.wrap(dst, offset, byteLength));
+            return byteLength;
+        }
+        int position = offset;
+        for (Field field : fields) {
+            if (field != null) {
+                position += field.writeTo(dst, position);
+            }
+        }
+        return position - offset;
     }
 
     /**
      * 获取当前报文的完整字符串表示形式
      */
     public String getHexString() {
+        materializeAll();
+        refreshIfDirty();
         StringBuilder res = new StringBuilder();
         // 循环写入所有字段信息
-        for (Field field : fields.values()) {
+        for (Field field : fields) {
+            if (field == null) {
+                continue;
+            }
             res.append(field.getLengthHex());
             res.append(field.getValueHex());
         }
@@ -208,10 +661,12 @@ public class Message {
      * <p>macBlock : mti+bitmap+data(除去校验位的8583报文数据)</p>
      */
     public String getMacBlockString() {
+        materializeAll();
+        refreshIfDirty();
         StringBuilder macBlockBuilder = new StringBuilder();
         //循环写入字段信息
-        for (Field field : fields.values()) {
-            if (field.getIndex() >= FieldIndex.MTI && field.getIndex() <= FieldIndex.F63) {
+        for (Field field : fields) {
+            if (field != null && field.getIndex() >= FieldIndex.MTI && field.getIndex() <= FieldIndex.F63) {
                 macBlockBuilder.append(field.getLengthHex());
                 macBlockBuilder.append(field.getValueHex());
             }
@@ -222,9 +677,64 @@ public class Message {
     /**
      * <p>获取用于计算mac的macBlock的字节数组表示</p>
      * <p>macBlock : mti+bitmap+data(出去校验位的8583报文数据)</p>
+     * <p>含半字节域的报文按整体hex字符串转换，见getBytes()</p>
      */
     public byte[] getMacBlock() {
-        return EncodeUtil.hex2Bytes(getMacBlockString());
+        if (!messageConfig.isByteAligned()) {
+            return EncodeUtil.hex2Bytes(getMacBlockString());
+        }
+        byte[] macBlock = new byte[getMacBlockLength()];
+        writeMacBlockTo(macBlock, 0);
+        return macBlock;
+    }
+
+    /**
+     * macBlock占用的字节数
+     */
+    public int getMacBlockLength() {
+        refreshIfDirty();
+        int length = 0;
+        for (int index = FieldIndex.MTI; index <= FieldIndex.F63; index++) {
+            length += fieldByteLength(index);
+        }
+        return length;
+    }
+
+    /**
+     * <p>macBlock在getBytes()/writeTo()输出中的开始位置，即MTI之前各部分的字节数</p>
+     * <p>各域按索引顺序连续写入，macBlock是输出中连续的一段</p>
+     */
+    public int getMacBlockOffset() {
+        refreshIfDirty();
+        int offset = 0;
+        for (int index = MessageConfig.MIN_FIELD_INDEX; index < FieldIndex.MTI; index++) {
+            offset += fieldByteLength(index);
+        }
+        return offset;
+    }
+
+    /**
+     * <p>将macBlock直接写入字节数组，不生成中间字符串，延迟解析的域直接复制原始字节</p>
+     *
+     * @param dst    目标数组
+     * @param offset 写入起始位置
+     * @return 写入的字节数
+     */
+    public int writeMacBlockTo(byte[] dst, int offset) {
+        int length = getMacBlockLength();
+        if (dst.length - offset < length) {
+            throw new Iso8583Exception("数组剩余空间[" + (dst.length - offset) + "]不足，macBlock需要[" + length + "]字节");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(dst, offset, length);
+        for (int index = FieldIndex.MTI; index <= FieldIndex.F63; index++) {
+            Field field = fieldAt(index);
+            if (field != null) {
+                field.writeTo(buffer);
+            } else if (isLazyPresent(index)) {
+                copySource(frameIndex.getOffset(index), frameIndex.getByteLength(index), buffer);
+            }
+        }
+        return length;
     }
 
     /**
@@ -235,7 +745,7 @@ public class Message {
             return null;
         }
         // 拿最后一个域
-        Field field = fields.get(this.bitmap.length);
+        Field field = lookup(this.bitmap.getSize());
         return field == null ? null : field.getValueHex();
     }
 
@@ -247,6 +757,10 @@ public class Message {
     }
 
 
+    public MessageConfig getMessageConfig() {
+        return messageConfig;
+    }
+
     /**
      * 比较两个Iso8583Message对象是否一样
      */
@@ -260,4 +774,34 @@ public class Message {
         return this.getHexString().equals(message.getHexString());
     }
 
+    /**
+     * 按域索引顺序遍历已生成的域
+     */
+    private class FieldIterator implements Iterator<Field> {
+
+        private int next = seek(0);
+
+        private int seek(int slot) {
+            while (slot < fields.length && fields[slot] == null) {
+                slot++;
+            }
+            return slot;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < fields.length;
+        }
+
+        @Override
+        public Field next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Field field = fields[next];
+            next = seek(next + 1);
+            return field;
+        }
+    }
+
 }
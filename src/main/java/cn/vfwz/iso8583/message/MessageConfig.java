@@ -1,53 +1,121 @@
 package cn.vfwz.iso8583.message;
 
+import cn.vfwz.iso8583.constant.FieldIndex;
 import cn.vfwz.iso8583.exception.Iso8583Exception;
 import cn.vfwz.iso8583.message.field.FieldType;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.List;
 
 @Slf4j
 public class MessageConfig {
 
+    /**
+     * 最小的域索引，域类型数组按该值偏移存放
+     */
+    public static final int MIN_FIELD_INDEX = FieldIndex.HEADER_LENGTH;
 
     /**
-     * <p>用于保存字段类型的集合</p>
+     * <p>用于保存字段类型的数组，下标为域索引减去MIN_FIELD_INDEX</p>
      * <p>相当于是一个报文模板集合</p>
      */
-    private final Map<Integer, FieldType> fieldTypeMap = new TreeMap<>();
+    private final FieldType[] fieldTypeTable;
+    /**
+     * 按域索引升序排列的已配置域类型，解析时顺序遍历；配置变动后置为null，下次使用时重新生成
+     */
+    private volatile FieldType[] fieldTypes = new FieldType[0];
+    /**
+     * 所有域是否都占用整字节，与fieldTypes一起生成
+     */
+    private boolean byteAligned = true;
+    /**
+     * 冻结后配置不可再修改，可在多线程间共享
+     */
+    private volatile boolean frozen = false;
     // 报文域长度
     private int fieldsCount = 64; // 默认64域报文
 
 
     public MessageConfig() {
-
+        this.fieldTypeTable = new FieldType[fieldsCount - MIN_FIELD_INDEX + 1];
     }
 
     public MessageConfig(int fieldsCount) {
         this.fieldsCount = fieldsCount;
+        this.fieldTypeTable = new FieldType[fieldsCount - MIN_FIELD_INDEX + 1];
     }
 
     /**
      * <p>分别设置8583报文中各个字段域的消息数据格式</p>
      */
     public MessageConfig set(FieldType fieldType) {
-        if (fieldType.getFieldIndex() > fieldsCount) {
+        if (frozen) {
+            throw new Iso8583Exception("报文配置已冻结，不允许再修改域[" + fieldType.getFieldIndex() + "]");
+        }
+        if (fieldType.getFieldIndex() > fieldsCount || fieldType.getFieldIndex() < MIN_FIELD_INDEX) {
             log.error("当前工厂最大报文域数量为:[{}], 该域索引[{}]超出了设置范围", fieldsCount, fieldType.getFieldIndex());
             throw new Iso8583Exception("当前工厂最大报文域数量为:[" + fieldsCount + "], 该域索引[" + fieldType.getFieldIndex() + "]超出了设置范围");
         }
-        fieldTypeMap.put(fieldType.getFieldIndex(), fieldType);
+        fieldTypeTable[fieldType.getFieldIndex() - MIN_FIELD_INDEX] = fieldType;
+        // 连续设置多个域时不重复生成，下次使用时再生成
+        this.fieldTypes = null;
         return this;
     }
 
+    /**
+     * 按索引排列的域类型，配置变动后重新生成，同时计算整字节标记
+     */
+    private FieldType[] buildFieldTypes() {
+        FieldType[] types = this.fieldTypes;
+        if (types != null) {
+            return types;
+        }
+        List<FieldType> configured = new ArrayList<>();
+        boolean aligned = true;
+        for (FieldType fieldType : fieldTypeTable) {
+            if (fieldType != null) {
+                configured.add(fieldType);
+                aligned = aligned && fieldType.isByteAligned();
+            }
+        }
+        types = configured.toArray(new FieldType[0]);
+        this.byteAligned = aligned;
+        this.fieldTypes = types;
+        return types;
+    }
+
+    /**
+     * <p>冻结当前配置，预先计算各域的编解码参数</p>
+     * <p>冻结后不允许再修改，包括子域配置，MessageDecoder和MessageEncoder可在多线程间安全共享</p>
+     * <p>冻结前的配置过程不是线程安全的，需要在同一个线程中完成配置并冻结</p>
+     *
+     * @return 当前配置
+     */
+    public MessageConfig freeze() {
+        if (frozen) {
+            return this;
+        }
+        for (FieldType fieldType : buildFieldTypes()) {
+            fieldType.freeze();
+        }
+        this.frozen = true;
+        return this;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
 
     /**
      * <p>获取指定索引的消息类型格式</p>
      * <p>index为int类型是为了保证避免由Factory维护的类型暴露</p>
      */
     public FieldType getFieldType(int index) {
-        FieldType fieldType = fieldTypeMap.get(index);
+        FieldType fieldType = getFieldTypeMute(index);
         if (null == fieldType) {
             throw new Iso8583Exception(String.format("没有找到当前索引的配置信息 ： %s", index));
         }
@@ -59,16 +127,34 @@ public class MessageConfig {
      * 不存在的fieldType不会报错
      */
     public FieldType getFieldTypeMute(int index) {
-        return fieldTypeMap.get(index);
+        int slot = index - MIN_FIELD_INDEX;
+        if (slot < 0 || slot >= fieldTypeTable.length) {
+            return null;
+        }
+        return fieldTypeTable[slot];
     }
 
+    /**
+     * 所有域是否都占用整字节，含半字节域(如BCD不对齐的子域)的报文只能按hex字符解析
+     */
+    public boolean isByteAligned() {
+        buildFieldTypes();
+        return byteAligned;
+    }
 
     public int getFieldsCount() {
         return fieldsCount;
     }
 
     public Iterator<FieldType> getFieldTypeIterator() {
-        return this.fieldTypeMap.values().iterator();
+        return Arrays.asList(buildFieldTypes()).iterator();
+    }
+
+    /**
+     * 按域索引升序排列的已配置域类型，仅供解析和组装时遍历，不允许修改
+     */
+    FieldType[] getFieldTypes() {
+        return buildFieldTypes();
     }
 
 }
@@ -1,6 +1,7 @@
 package cn.vfwz.iso8583.message;
 
 import cn.vfwz.iso8583.constant.FieldIndex;
+import cn.vfwz.iso8583.exception.Iso8583Exception;
 import cn.vfwz.iso8583.message.field.Field;
 import cn.vfwz.iso8583.message.field.FieldType;
 import cn.vfwz.iso8583.util.EncodeUtil;
@@ -8,10 +9,12 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.io.CharArrayReader;
 import java.io.Reader;
-import java.util.Iterator;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
 
 /**
  * <p>8583报文格式工厂，通过该类来约束一个8583报文各个字段的类型以及处理方式</p>
+ * <p>解析过程不修改自身状态，使用冻结后的MessageConfig时可在多线程间共享</p>
  */
 @Slf4j
 public class MessageDecoder {
@@ -36,7 +39,7 @@ public class MessageDecoder {
      * <p>将一个包括消息长度的byte[]格式的消息报文转换为一个Iso8583Message对象</p>
      */
     public Message decodeWithMsgLength(byte[] data) {
-        return decodeWithMsgLength(EncodeUtil.bytes2Hex(data));
+        return decode(ByteBuffer.wrap(data), true);
     }
 
     /**
@@ -58,15 +61,28 @@ public class MessageDecoder {
      * @return 解析后的报文对象
      */
     public Message decode(String hexData, boolean hasLength) {
+        // 整字节报文直接转为字节解析，含半字节域的报文(如BCD不对齐的子域)仍按hex字符解析
+        if (hexData.length() % 2 == 0 && this.messageConfig.isByteAligned()) {
+            return decode(ByteBuffer.wrap(EncodeUtil.hex2Bytes(hexData)), hasLength);
+        }
+        return decodeHex(hexData, hasLength);
+    }
+
+    /**
+     * 按hex字符逐个域解析报文，支持只占半个字节的域
+     *
+     * @param hexData   hex格式报文
+     * @param hasLength 是否有开头的长度部分
+     * @return 解析后的报文对象
+     */
+    private Message decodeHex(String hexData, boolean hasLength) {
         Reader reader = new CharArrayReader(hexData.toCharArray());
 
         //顺序解析，按FieldIndex升序逐个解析
-        MessageEncoder encoder = new MessageEncoder(this.getMessageConfig());
+        Message message = new Message(this.messageConfig);
 
-        Iterator<FieldType> fieldTypeIterator = this.messageConfig.getFieldTypeIterator();
-        String binaryByteBitmapStr = null;
-        while (fieldTypeIterator.hasNext()) {
-            FieldType fieldType = fieldTypeIterator.next();
+        Bitmap bitmap = null;
+        for (FieldType fieldType : this.messageConfig.getFieldTypes()) {
             // 是否不需要解析报文开头的长度部分
             int fieldIndex = fieldType.getFieldIndex();
             if (this.messageConfig.getFieldsCount() != 128 // 128域报文长度不在开头
@@ -74,38 +90,253 @@ public class MessageDecoder {
                     && !hasLength) {
                 continue;
             }
-            if (existInMessage(binaryByteBitmapStr, fieldIndex)) {
-                Field field = this.messageConfig.getFieldType(fieldIndex).decodeField(reader);
-                encoder.setField(field);
+            if (existInMessage(bitmap, fieldIndex)) {
+                Field field = fieldType.decodeField(reader);
+                message.putField(field);
                 if (fieldIndex == FieldIndex.BITMAP) { // 遇到bitmap, 后续的报文按照bitmap进行解析
-                    binaryByteBitmapStr = EncodeUtil.binary(field.getValueBytes());
+                    bitmap = Bitmap.of(field.getValueBytes());
                 }
             }
         }
-        return encoder.encode();
+        return message;
     }
 
     /**
      * <p>将一个不包括消息长度的byte[]格式的消息报文转换成为一个Iso8583Message对象</p>
      */
     public Message decode(byte[] bytesData) {
-        return this.decode(EncodeUtil.bytes2Hex(bytesData));
+        return this.decode(ByteBuffer.wrap(bytesData), false);
+    }
+
+    /**
+     * 解析字节缓冲区中不带开头长度部分的报文
+     *
+     * @param buffer 报文字节缓冲区
+     * @return 解析后的报文对象
+     */
+    public Message decode(ByteBuffer buffer) {
+        return decode(buffer, false);
+    }
+
+    /**
+     * 直接按字节解析报文，BCD、HEX、ASCII域值及长度部分均从原始字节读取，不经过hex字符串
+     * 从buffer当前position开始解析，解析完成后position移动到报文结尾
+     *
+     * @param buffer    报文字节缓冲区，支持堆内及直接内存
+     * @param hasLength 是否有开头的长度部分
+     * @return 解析后的报文对象
+     */
+    public Message decode(ByteBuffer buffer, boolean hasLength) {
+        Message message = new Message(this.messageConfig);
+
+        Bitmap bitmap = null;
+        for (FieldType fieldType : this.messageConfig.getFieldTypes()) {
+            int fieldIndex = fieldType.getFieldIndex();
+            if (this.messageConfig.getFieldsCount() != 128 // 128域报文长度不在开头
+                    && FieldIndex.TOTAL_MESSAGE_LENGTH == fieldIndex
+                    && !hasLength) {
+                continue;
+            }
+            if (existInMessage(bitmap, fieldIndex)) {
+                int bitmapOffset = buffer.position();
+                Field field = fieldType.decodeField(buffer);
+                message.putField(field);
+                if (fieldIndex == FieldIndex.BITMAP) { // 遇到bitmap, 后续的报文按照bitmap进行解析
+                    bitmap = readBitmap(buffer, bitmapOffset, buffer.position() - bitmapOffset);
+                }
+            }
+        }
+        return message;
+    }
+
+    /**
+     * <p>将报文解析到调用方提供的报文中，报文原有的域会被清空，配合MessagePool复用报文对象</p>
+     * <p>与decodeLazy(buffer, hasLength, message)相同：只扫描一遍记录各域位置，位置索引复用报文中保留的索引，
+     * 域对象在第一次访问时生成，并复用报文clear()后保留的域对象，每个域只创建域值、长度hex、值hex字符串</p>
+     * <p>返回的报文直接引用buffer的内容，在报文使用完或clear()之前不能修改</p>
+     *
+     * @param buffer    报文字节缓冲区，支持堆内及直接内存
+     * @param hasLength 是否有开头的长度部分
+     * @param message   用于复用的报文，需要使用相同的MessageConfig
+     * @return 解析后的报文，即传入的message
+     */
+    public Message decode(ByteBuffer buffer, boolean hasLength, Message message) {
+        return decodeLazy(buffer, hasLength, message);
+    }
+
+    /**
+     * <p>只解析指定的域，解析不带开头长度部分的报文</p>
+     * <p>其余的域只读取长度部分跳过，不生成域值、字符串及子域报文</p>
+     *
+     * @param data       报文数据
+     * @param projection 需要解析的域
+     * @return 只包含指定域的报文
+     */
+    public Message decode(byte[] data, FieldSet projection) {
+        return decode(ByteBuffer.wrap(data), false, projection);
+    }
+
+    /**
+     * 只解析指定的域，解析完成后buffer的position移动到报文结尾
+     *
+     * @param buffer     报文字节缓冲区
+     * @param hasLength  是否有开头的长度部分
+     * @param projection 需要解析的域
+     * @return 只包含指定域的报文，bitmap及报文长度按包含的域生成
+     */
+    public Message decode(ByteBuffer buffer, boolean hasLength, FieldSet projection) {
+        return decode(buffer, hasLength, projection, new Message(this.messageConfig));
+    }
+
+    /**
+     * 只解析指定的域到调用方提供的报文中，报文原有的域会被清空，扫描使用报文中保留的位置索引
+     *
+     * @param buffer     报文字节缓冲区
+     * @param hasLength  是否有开头的长度部分
+     * @param projection 需要解析的域
+     * @param message    用于复用的报文，需要使用相同的MessageConfig
+     * @return 只包含指定域的报文，即传入的message
+     */
+    public Message decode(ByteBuffer buffer, boolean hasLength, FieldSet projection, Message message) {
+        checkReusable(message);
+        message.clear();
+        FrameIndex frameIndex = index(buffer, hasLength, message.reusableFrameIndex());
+        for (FieldType fieldType : this.messageConfig.getFieldTypes()) {
+            int fieldIndex = fieldType.getFieldIndex();
+            if (projection.contains(fieldIndex) && frameIndex.isPresent(fieldIndex)) {
+                message.putField(fieldType.decodeField(buffer, frameIndex.getOffset(fieldIndex)));
+            }
+        }
+        return message;
+    }
+
+    /**
+     * <p>延迟解析不带开头长度部分的报文</p>
+     * <p>只扫描一遍bitmap和长度部分记录各域位置，域对象在第一次访问时才生成</p>
+     * <p>返回的报文直接引用data，在报文使用完之前不能修改data</p>
+     */
+    public Message decodeLazy(byte[] data) {
+        return decodeLazy(ByteBuffer.wrap(data), false);
+    }
+
+    /**
+     * 延迟解析包括开头长度部分的报文
+     */
+    public Message decodeLazyWithMsgLength(byte[] data) {
+        return decodeLazy(ByteBuffer.wrap(data), true);
+    }
+
+    /**
+     * <p>延迟解析字节缓冲区中的报文，解析完成后buffer的position移动到报文结尾</p>
+     * <p>返回的报文直接引用buffer的内容，在报文使用完之前不能修改</p>
+     *
+     * @param buffer    报文字节缓冲区
+     * @param hasLength 是否有开头的长度部分
+     * @return 延迟解析的报文对象
+     */
+    public Message decodeLazy(ByteBuffer buffer, boolean hasLength) {
+        FrameIndex frameIndex = index(buffer, hasLength, new FrameIndex(this.messageConfig));
+        return new Message(this.messageConfig, buffer, frameIndex);
+    }
+
+    /**
+     * <p>延迟解析报文到调用方提供的报文中，报文原有的域会被清空，位置索引复用报文中保留的索引</p>
+     * <p>返回的报文直接引用buffer的内容，在报文使用完或clear()之前不能修改</p>
+     *
+     * @param buffer    报文字节缓冲区
+     * @param hasLength 是否有开头的长度部分
+     * @param message   用于复用的报文，需要使用相同的MessageConfig
+     * @return 延迟解析的报文，即传入的message
+     */
+    public Message decodeLazy(ByteBuffer buffer, boolean hasLength, Message message) {
+        checkReusable(message);
+        message.clear();
+        FrameIndex frameIndex = index(buffer, hasLength, message.reusableFrameIndex());
+        message.load(buffer, frameIndex);
+        return message;
+    }
+
+    private void checkReusable(Message message) {
+        if (message.getMessageConfig() != this.messageConfig) {
+            throw new Iso8583Exception("复用的报文与解析器的MessageConfig不一致");
+        }
+    }
+
+    /**
+     * <p>扫描报文，只读取bitmap和各域长度部分，记录各个存在的域的位置</p>
+     * <p>从buffer当前position开始扫描，扫描完成后position移动到报文结尾</p>
+     *
+     * @param buffer     报文字节缓冲区
+     * @param hasLength  是否有开头的长度部分
+     * @param frameIndex 用于记录位置的索引，会先被清空
+     * @return 记录了域位置的索引
+     */
+    public FrameIndex index(ByteBuffer buffer, boolean hasLength, FrameIndex frameIndex) {
+        int offset = buffer.position();
+        frameIndex.reset(offset);
+        Bitmap bitmap = null;
+        for (FieldType fieldType : this.messageConfig.getFieldTypes()) {
+            int fieldIndex = fieldType.getFieldIndex();
+            if (this.messageConfig.getFieldsCount() != 128 // 128域报文长度不在开头
+                    && FieldIndex.TOTAL_MESSAGE_LENGTH == fieldIndex
+                    && !hasLength) {
+                continue;
+            }
+            if (!existInMessage(bitmap, fieldIndex)) {
+                continue;
+            }
+            int valueLength;
+            int valueOffset;
+            int end;
+            try {
+                valueLength = fieldType.getValueLength(buffer, offset);
+                valueOffset = offset + fieldType.getLengthByteCount();
+                end = valueOffset + fieldType.getValueByteCount(valueLength);
+            } catch (Exception e) {
+                log.error("扫描域[{}]失败", fieldIndex, e);
+                throw new Iso8583Exception("扫描域[" + fieldIndex + "]失败", e);
+            }
+            if (end > buffer.limit()) {
+                throw new Iso8583Exception("报文剩余长度[" + (buffer.limit() - valueOffset) + "]不足，域[" + fieldIndex + "]需要[" + (end - valueOffset) + "]字节");
+            }
+            frameIndex.put(fieldIndex, offset, valueOffset, valueLength, end);
+            if (fieldIndex == FieldIndex.BITMAP) { // 遇到bitmap, 后续的报文按照bitmap进行解析
+                bitmap = frameIndex.bitmap((end - valueOffset) * 8);
+                bitmap.read(buffer, valueOffset);
+            }
+            offset = end;
+        }
+        ((Buffer) buffer).position(offset);
+        return frameIndex;
     }
 
     /**
      * 根据索引判断一个域是否存在于报文中
      *
-     * @param binaryByteBitmapStr bitmap的二进制表示 0110000000111100000000001000000100001010110100001000110000010001
-     * @param fieldIndex          域索引
+     * @param bitmap     已解析的bitmap
+     * @param fieldIndex 域索引
      * @return 存在true，不存在false
      */
-    private boolean existInMessage(String binaryByteBitmapStr, int fieldIndex) {
-        if (binaryByteBitmapStr == null ||
-                fieldIndex < 1 || fieldIndex > binaryByteBitmapStr.length()) {
+    private boolean existInMessage(Bitmap bitmap, int fieldIndex) {
+        if (bitmap == null ||
+                fieldIndex < 1 || fieldIndex > bitmap.getSize()) {
             return true; // 没有配置bitmap, 或者索引超出bitmap范围的域都要进行解析
         }
-        //判断索引是否为“1”来觉得是否要解析当前域
-        return '1' == binaryByteBitmapStr.charAt(fieldIndex - 1);
+        return bitmap.test(fieldIndex);
+    }
+
+    /**
+     * 直接从缓冲区中的bitmap原始字节读取位图
+     */
+    private Bitmap readBitmap(ByteBuffer buffer, int offset, int length) {
+        if (buffer.hasArray()) {
+            return Bitmap.of(buffer.array(), buffer.arrayOffset() + offset, length);
+        }
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return Bitmap.of(bytes);
     }
 
     public MessageConfig getMessageConfig() {
@@ -1,33 +1,76 @@
 package cn.vfwz.iso8583.message;
 
+import cn.vfwz.iso8583.exception.Iso8583Exception;
 import cn.vfwz.iso8583.message.field.Field;
 import cn.vfwz.iso8583.message.field.FieldType;
 
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.Arrays;
 
+/**
+ * <p>报文组装器，非线程安全</p>
+ * <p>encode()后可通过reset()清空已设置的域，继续组装下一个报文</p>
+ */
 public class MessageEncoder {
 
     private final MessageConfig messageConfig;
-    private final Map<Integer, Field> fields = new TreeMap<>();
+    /**
+     * 已设置的域，下标为域索引减去MessageConfig.MIN_FIELD_INDEX
+     */
+    private final Field[] fields;
+    /**
+     * setField(index, value)生成的域对象，按域索引排列，再次设置同一个域时复用；
+     * 组装时报文持有副本，这些域对象不会被组装器以外的代码引用
+     */
+    private final Field[] ownFields;
 
     public MessageEncoder(MessageConfig messageConfig) {
         this.messageConfig = messageConfig;
+        this.fields = new Field[messageConfig.getFieldsCount() - MessageConfig.MIN_FIELD_INDEX + 1];
+        this.ownFields = new Field[this.fields.length];
     }
 
     public MessageEncoder setField(int index, String value) {
         FieldType fieldType = this.messageConfig.getFieldType(index);
-        setField(fieldType.encodeField(value));
+        int slot = index - MessageConfig.MIN_FIELD_INDEX;
+        Field reuse = slot < 0 || slot >= ownFields.length ? null : ownFields[slot];
+        Field field = fieldType.encodeField(value, reuse);
+        setField(field);
+        ownFields[slot] = field;
         return this;
     }
 
     public MessageEncoder setField(Field field) {
-        fields.put(field.getIndex(), field);
+        int slot = field.getIndex() - MessageConfig.MIN_FIELD_INDEX;
+        if (slot < 0 || slot >= fields.length) {
+            throw new Iso8583Exception("域索引[" + field.getIndex() + "]超出报文域数量[" + messageConfig.getFieldsCount() + "]");
+        }
+        fields[slot] = field;
+        return this;
+    }
+
+    /**
+     * 清空已设置的域，用于复用组装器，setField(index, value)生成的域对象保留下来复用
+     */
+    public MessageEncoder reset() {
+        Arrays.fill(fields, null);
         return this;
     }
 
     public Message encode() {
-        Message message = new Message(messageConfig);
+        return encode(new Message(messageConfig));
+    }
+
+    /**
+     * <p>将已设置的域组装到调用方提供的报文中，报文原有的域会被清空</p>
+     * <p>报文复用clear()后保留的域对象保存已设置域的副本，配合reset()组装时不再创建域对象</p>
+     *
+     * @param message 用于复用的报文，需要使用相同的MessageConfig
+     * @return 组装后的报文
+     */
+    public Message encode(Message message) {
+        if (message.getMessageConfig() != messageConfig) {
+            throw new Iso8583Exception("复用的报文与组装器的MessageConfig不一致");
+        }
         message.setFields(this.fields);
         return message;
     }
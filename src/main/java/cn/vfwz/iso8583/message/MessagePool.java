@@ -0,0 +1,67 @@
+package cn.vfwz.iso8583.message;
+
+import cn.vfwz.iso8583.exception.Iso8583Exception;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * <p>同一个报文配置下可复用的报文对象池，容量有限，池满时归还的报文直接丢弃</p>
+ * <p>配合MessageDecoder.decode(buffer, hasLength, message)或decodeLazy(buffer, hasLength, message)使用，
+ * 解析、处理、组装的过程中不再创建报文对象</p>
+ * <p>归还时clear()保留报文的位置索引及域对象，解析、组装时复用；域对象的字符串仍在访问域时创建，
+ * 需要接近零分配时配合FieldHolder读取，或者使用MessageView</p>
+ * <p>从借出的报文中取得的Field在报文归还后会被复用，不能再继续使用</p>
+ * <p>线程安全；借出的报文在归还前只能由一个线程使用，归还后不能再继续使用，同一个报文不能重复归还</p>
+ */
+public class MessagePool {
+
+    private final MessageConfig messageConfig;
+    private final ArrayBlockingQueue<Message> idle;
+
+    /**
+     * @param messageConfig 冻结后的报文配置
+     * @param capacity      池中最多保留的空闲报文数量
+     */
+    public MessagePool(MessageConfig messageConfig, int capacity) {
+        if (!messageConfig.isFrozen()) {
+            throw new Iso8583Exception("MessagePool需要使用冻结后的MessageConfig，请先调用freeze()");
+        }
+        this.messageConfig = messageConfig;
+        this.idle = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * 借出一个空报文，池中没有空闲报文时新建
+     */
+    public Message acquire() {
+        Message message = idle.poll();
+        return message != null ? message : new Message(messageConfig);
+    }
+
+    /**
+     * 清空并归还报文，池满时丢弃
+     *
+     * @param message 借出的报文，为null时忽略
+     */
+    public void release(Message message) {
+        if (message == null) {
+            return;
+        }
+        if (message.getMessageConfig() != messageConfig) {
+            throw new Iso8583Exception("归还的报文与报文池的MessageConfig不一致");
+        }
+        message.clear();
+        idle.offer(message);
+    }
+
+    /**
+     * 当前池中空闲的报文数量
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public MessageConfig getMessageConfig() {
+        return messageConfig;
+    }
+}
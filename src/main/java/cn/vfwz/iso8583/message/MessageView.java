@@ -0,0 +1,256 @@
+package cn.vfwz.iso8583.message;
+
+import cn.vfwz.iso8583.constant.FieldIndex;
+import cn.vfwz.iso8583.exception.Iso8583Exception;
+import cn.vfwz.iso8583.message.field.FieldHolder;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * <p>只读的报文视图，直接引用接收到的报文缓冲区，不复制报文数据</p>
+ * <p>通过wrap()重新指向新的报文，每个工作线程持有一个实例即可反复使用，指向报文时不产生新对象</p>
+ * <p>需要修改报文时通过toMessage()生成一个独立的Message</p>
+ * <p>非线程安全；在视图使用期间不能修改被引用的缓冲区内容</p>
+ */
+public class MessageView {
+
+    private final MessageConfig messageConfig;
+    private final MessageDecoder decoder;
+    private final FrameIndex frameIndex;
+    /**
+     * 报文开头是否包括长度部分
+     */
+    private final boolean hasLength;
+    private ByteBuffer buffer;
+    /**
+     * 最近一次包装的字节数组，重复包装同一个数组时复用
+     */
+    private ByteBuffer arrayBuffer;
+
+    public MessageView(MessageConfig messageConfig) {
+        this(messageConfig, false);
+    }
+
+    /**
+     * @param messageConfig 冻结后的报文配置
+     * @param hasLength     报文开头是否包括长度部分
+     */
+    public MessageView(MessageConfig messageConfig, boolean hasLength) {
+        if (!messageConfig.isFrozen()) {
+            throw new Iso8583Exception("MessageView需要使用冻结后的MessageConfig，请先调用freeze()");
+        }
+        this.messageConfig = messageConfig;
+        this.decoder = new MessageDecoder(messageConfig);
+        this.frameIndex = new FrameIndex(messageConfig);
+        this.hasLength = hasLength;
+    }
+
+    /**
+     * 指向缓冲区中position到limit之间的报文
+     */
+    public MessageView wrap(ByteBuffer buffer) {
+        return wrap(buffer, buffer.position(), buffer.remaining());
+    }
+
+    /**
+     * <p>指向缓冲区中的一段报文，扫描bitmap和长度部分记录各域位置</p>
+     * <p>不改变buffer的position和limit</p>
+     *
+     * @param buffer 报文缓冲区，支持堆内及直接内存
+     * @param offset 报文开始位置
+     * @param length 报文长度
+     * @return 当前视图
+     */
+    public MessageView wrap(ByteBuffer buffer, int offset, int length) {
+        int position = buffer.position();
+        int limit = buffer.limit();
+        // 扫描失败时视图不指向任何报文
+        this.buffer = null;
+        try {
+            ((Buffer) buffer).limit(offset + length);
+            ((Buffer) buffer).position(offset);
+            decoder.index(buffer, hasLength, frameIndex);
+        } finally {
+            ((Buffer) buffer).limit(limit);
+            ((Buffer) buffer).position(position);
+        }
+        this.buffer = buffer;
+        return this;
+    }
+
+    /**
+     * 指向字节数组中的一段报文
+     */
+    public MessageView wrap(byte[] data, int offset, int length) {
+        if (arrayBuffer == null || arrayBuffer.array() != data) {
+            arrayBuffer = ByteBuffer.wrap(data);
+        }
+        return wrap(arrayBuffer, offset, length);
+    }
+
+    public MessageView wrap(byte[] data) {
+        return wrap(data, 0, data.length);
+    }
+
+    /**
+     * 判断域是否存在于当前报文中
+     */
+    public boolean isPresent(int index) {
+        checkWrapped();
+        return frameIndex.isPresent(index);
+    }
+
+    /**
+     * 报文中的bitmap，没有bitmap域时为null，只读，重新指向报文后内容会变化
+     */
+    public Bitmap getBitmap() {
+        checkWrapped();
+        return frameIndex.getBitmap();
+    }
+
+    /**
+     * 获取域值，不存在的域返回null
+     */
+    public String getValue(int index) {
+        if (!isPresent(index)) {
+            return null;
+        }
+        return messageConfig.getFieldType(index)
+                .decodeValue(buffer, frameIndex.getValueOffset(index), frameIndex.getValueLength(index));
+    }
+
+    /**
+     * 获取域值部分的原始字节，不存在的域返回null
+     */
+    public byte[] getBytes(int index) {
+        if (!isPresent(index)) {
+            return null;
+        }
+        byte[] bytes = new byte[frameIndex.getValueByteLength(index)];
+        getBytes(index, bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * 将域值部分的原始字节复制到调用方提供的数组，不产生新对象
+     *
+     * @param index  域索引
+     * @param dst    目标数组
+     * @param offset 写入起始位置
+     * @return 复制的字节数，域不存在时返回-1
+     */
+    public int getBytes(int index, byte[] dst, int offset) {
+        if (!isPresent(index)) {
+            return -1;
+        }
+        int valueOffset = frameIndex.getValueOffset(index);
+        int byteLength = frameIndex.getValueByteLength(index);
+        if (buffer.hasArray()) {
+            System.arraycopy(buffer.array(), buffer.arrayOffset() + valueOffset, dst, offset, byteLength);
+        } else {
+            for (int i = 0; i < byteLength; i++) {
+                dst[offset + i] = buffer.get(valueOffset + i);
+            }
+        }
+        return byteLength;
+    }
+
+    /**
+     * 将域读取到调用方提供的可复用容器中，不生成域对象
+     *
+     * @return 域存在true，不存在false，不存在时容器被清空
+     */
+    public boolean getField(int index, FieldHolder holder) {
+        if (!isPresent(index)) {
+            holder.clear();
+            return false;
+        }
+        holder.set(messageConfig.getFieldType(index), frameIndex.getValueLength(index),
+                buffer, frameIndex.getValueOffset(index), frameIndex.getValueByteLength(index));
+        return true;
+    }
+
+    /**
+     * 域值部分在缓冲区中的开始位置，用于直接读取缓冲区，不存在的域返回-1
+     */
+    public int getValueOffset(int index) {
+        return isPresent(index) ? frameIndex.getValueOffset(index) : -1;
+    }
+
+    /**
+     * 域值部分占用的字节数，不存在的域返回-1
+     */
+    public int getValueByteLength(int index) {
+        return isPresent(index) ? frameIndex.getValueByteLength(index) : -1;
+    }
+
+    /**
+     * 域值长度，即长度部分声明的长度，不存在的域返回-1
+     */
+    public int getValueLength(int index) {
+        return isPresent(index) ? frameIndex.getValueLength(index) : -1;
+    }
+
+    /**
+     * <p>计算mac的macBlock(MTI至63域，包括各域长度部分)在缓冲区中的开始位置</p>
+     * <p>各域在报文中按索引顺序连续存放，macBlock是缓冲区中连续的一段</p>
+     */
+    public int getMacBlockOffset() {
+        checkWrapped();
+        int index = frameIndex.nextIndex(FieldIndex.MTI);
+        return index == Integer.MIN_VALUE || index > FieldIndex.F63 ? frameIndex.getEnd() : frameIndex.getOffset(index);
+    }
+
+    /**
+     * macBlock占用的字节数
+     */
+    public int getMacBlockLength() {
+        int offset = getMacBlockOffset();
+        int end = offset;
+        for (int index = frameIndex.nextIndex(FieldIndex.MTI); index != Integer.MIN_VALUE && index <= FieldIndex.F63;
+             index = frameIndex.nextIndex(index + 1)) {
+            end = frameIndex.getOffset(index) + frameIndex.getByteLength(index);
+        }
+        return end - offset;
+    }
+
+    /**
+     * 当前报文在缓冲区中占用的字节数
+     */
+    public int getFrameLength() {
+        checkWrapped();
+        return frameIndex.getEnd() - frameIndex.getStart();
+    }
+
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    public MessageConfig getMessageConfig() {
+        return messageConfig;
+    }
+
+    /**
+     * 复制当前报文生成一个独立的可修改报文，域对象在访问时才生成
+     */
+    public Message toMessage() {
+        checkWrapped();
+        byte[] frame = new byte[getFrameLength()];
+        int start = frameIndex.getStart();
+        if (buffer.hasArray()) {
+            System.arraycopy(buffer.array(), buffer.arrayOffset() + start, frame, 0, frame.length);
+        } else {
+            for (int i = 0; i < frame.length; i++) {
+                frame[i] = buffer.get(start + i);
+            }
+        }
+        return decoder.decodeLazy(ByteBuffer.wrap(frame), hasLength);
+    }
+
+    private void checkWrapped() {
+        if (buffer == null) {
+            throw new Iso8583Exception("MessageView尚未指向报文，请先调用wrap()");
+        }
+    }
+}
@@ -15,14 +15,19 @@
  */
 package cn.vfwz.iso8583.message.field;
 
+import cn.vfwz.iso8583.exception.Iso8583Exception;
 import cn.vfwz.iso8583.message.Message;
 import cn.vfwz.iso8583.util.EncodeUtil;
 import lombok.extern.slf4j.Slf4j;
 
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
 import java.util.Iterator;
 
 /**
- * 8583报文域抽象，不可变类
+ * 8583报文域抽象，创建后不再修改
+ * <p>报文clear()、组装器reset()后，其中的域对象会在生成新域时复用，见FieldType.decodeField(ByteBuffer, int, Field)</p>
+ * <p>子域报文在第一次访问时解析并缓存，通过volatile发布，可在多线程间共享</p>
  */
 @Slf4j
 public class Field implements Comparable<Field> {
@@ -34,19 +39,19 @@ public class Field implements Comparable<Field> {
     /**
      * 数据长度
      */
-    private final int length;
+    private int length;
     /**
      * 数据值
      */
-    private final String value;
+    private String value;
     /**
      * hex格式的数据值
      */
-    private final String valueHex;
+    private String valueHex;
     /**
      * hex格式的长度值
      */
-    private final String lengthHex;
+    private String lengthHex;
     /**
      * 报文格式类型
      */
@@ -55,9 +60,9 @@ public class Field implements Comparable<Field> {
     protected Field parentField;
 
     /**
-     * 子域
+     * 子域，域类型配置了子域格式时在第一次访问时解析，子域的父域设置完成后才发布
      */
-    protected Message fieldMessage;
+    protected volatile Message fieldMessage;
 
 //    private final String tagName; // TLV格式域 tag信息
 //
@@ -82,10 +87,23 @@ public class Field implements Comparable<Field> {
         this.lengthHex = lengthHex;
         this.valueHex = valueHex;
         this.fieldType = fieldType;
-        this.fieldMessage = fieldMessage;
         if (fieldMessage != null) {
             fieldMessage.getFieldIterator().forEachRemaining(field -> field.setParentField(this));
         }
+        this.fieldMessage = fieldMessage;
+    }
+
+    /**
+     * 复用域对象时重新设置内容，清除父域及已解析的子域，由FieldType在生成新域时调用
+     */
+    Field reset(int length, String value, String lengthHex, String valueHex) {
+        this.parentField = null;
+        this.fieldMessage = null;
+        this.length = length;
+        this.value = value;
+        this.lengthHex = lengthHex;
+        this.valueHex = valueHex;
+        return this;
     }
 
     /**
@@ -125,6 +143,72 @@ public class Field implements Comparable<Field> {
         return EncodeUtil.hex2Bytes(this.valueHex);
     }
 
+    /**
+     * 获取当前域长度部分与值部分共占用的字节数
+     */
+    public int getByteLength() {
+        return (this.lengthHex.length() + this.valueHex.length()) / 2;
+    }
+
+    /**
+     * 将当前域的长度部分和值部分直接写入字节数组
+     *
+     * @param dst    目标数组
+     * @param offset 写入起始位置
+     * @return 写入的字节数
+     */
+    public int writeTo(byte[] dst, int offset) {
+        checkByteAligned();
+        int written = this.fieldType.getFieldLengthType().writeLength(dst, offset, this.length);
+        return written + EncodeUtil.hex2Bytes(this.valueHex, dst, offset + written);
+    }
+
+    /**
+     * 将当前域的长度部分和值部分直接写入缓冲区当前位置
+     *
+     * @param buffer 目标缓冲区
+     * @return 写入的字节数
+     */
+    public int writeTo(ByteBuffer buffer) {
+        checkByteAligned();
+        int written = this.fieldType.getFieldLengthType().writeLength(buffer, buffer.position(), this.length);
+        ((Buffer) buffer).position(buffer.position() + written);
+        return written + EncodeUtil.hex2Bytes(this.valueHex, buffer);
+    }
+
+    private void checkByteAligned() {
+        if (this.lengthHex.length() % 2 != 0 || this.valueHex.length() % 2 != 0) {
+            throw new Iso8583Exception("域[" + getIndexString() + "]不是整字节，无法直接写入字节");
+        }
+    }
+
+    /**
+     * 获取子域报文，第一次访问时按域类型的子域格式解析，之后直接返回
+     * <p>多个线程同时第一次访问时可能各自解析一次，发布的都是完整的子域报文</p>
+     *
+     * @return 没有配置子域格式时返回null
+     */
+    public Message getFieldMessage() {
+        Message message = this.fieldMessage;
+        if (message == null && this.fieldType != null && this.fieldType.getFieldMessageConfig() != null) {
+            message = this.fieldType.decodeFieldMessage(this.valueHex);
+            message.getFieldIterator().forEachRemaining(field -> field.setParentField(this));
+            this.fieldMessage = message;
+        }
+        return message;
+    }
+
+    /**
+     * 获取子域
+     *
+     * @param index 子域索引
+     * @return 没有配置子域格式或子域不存在时返回null
+     */
+    public Field getSubField(int index) {
+        Message message = getFieldMessage();
+        return message == null ? null : message.getField(index);
+    }
+
     public void setParentField(Field parentField) {
         this.parentField = parentField;
     }
@@ -165,8 +249,12 @@ public class Field implements Comparable<Field> {
         StringBuilder sb = new StringBuilder();
         String format = "[F%s][%s][%s][%s][%s]\n";
         sb.append(String.format(format, this.getIndexString(), fieldType.getFieldLengthType(), fieldType.getFieldValueType(), this.getLength(), this.getValue()));
-        if (this.fieldMessage != null) {
-            Iterator<Field> subField = this.fieldMessage.getFieldIterator();
+        Message message = this.fieldMessage;
+        if (message == null && this.fieldType.getFieldMessageConfig() != null) {
+            message = formatFieldMessage();
+        }
+        if (message != null) {
+            Iterator<Field> subField = message.getFieldIterator();
             while (subField.hasNext()) {
                 sb.append(" ");
                 sb.append(subField.next().toFormatString());
@@ -175,6 +263,20 @@ public class Field implements Comparable<Field> {
         return sb.toString();
     }
 
+    /**
+     * 格式化输出时临时解析子域，结果不缓存；子域格式与域值不符时返回null，只输出原始域值
+     */
+    private Message formatFieldMessage() {
+        try {
+            Message message = this.fieldType.decodeFieldMessage(this.valueHex);
+            message.getFieldIterator().forEachRemaining(field -> field.setParentField(this));
+            return message;
+        } catch (RuntimeException e) {
+            log.debug("域[{}]子域解析失败，按原始值输出", getIndexString(), e);
+            return null;
+        }
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
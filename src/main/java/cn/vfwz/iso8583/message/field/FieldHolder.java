@@ -0,0 +1,161 @@
+package cn.vfwz.iso8583.message.field;
+
+import cn.vfwz.iso8583.exception.Iso8583Exception;
+import cn.vfwz.iso8583.util.EncodeUtil;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>可复用的域容器，用于在不生成Field对象的情况下读取域</p>
+ * <p>域值部分的原始字节复制到内部数组中，数组只在容量不足时扩大；域值字符串在第一次调用getValue()时生成</p>
+ * <p>非线程安全，每个工作线程持有一个实例反复使用</p>
+ */
+public class FieldHolder {
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private FieldType fieldType;
+    /**
+     * 域值长度，即长度部分声明的长度
+     */
+    private int valueLength;
+    /**
+     * 域值部分的原始字节，只有前byteLength个字节有效
+     */
+    private byte[] bytes;
+    private ByteBuffer bytesBuffer;
+    private int byteLength;
+    private String value;
+
+    public FieldHolder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity 内部数组的初始容量
+     */
+    public FieldHolder(int capacity) {
+        this.bytes = new byte[capacity];
+        this.bytesBuffer = ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * 从原始报文中复制域值部分
+     *
+     * @param fieldType   域类型
+     * @param valueLength 域值长度
+     * @param source      报文缓冲区
+     * @param valueOffset 域值部分开始位置
+     * @param byteLength  域值部分占用的字节数
+     */
+    public void set(FieldType fieldType, int valueLength, ByteBuffer source, int valueOffset, int byteLength) {
+        ensureCapacity(byteLength);
+        if (source.hasArray()) {
+            System.arraycopy(source.array(), source.arrayOffset() + valueOffset, bytes, 0, byteLength);
+        } else {
+            for (int i = 0; i < byteLength; i++) {
+                bytes[i] = source.get(valueOffset + i);
+            }
+        }
+        this.fieldType = fieldType;
+        this.valueLength = valueLength;
+        this.byteLength = byteLength;
+        this.value = null;
+    }
+
+    /**
+     * 从已生成的域复制域值部分
+     */
+    public void set(Field field) {
+        String valueHex = field.getValueHex();
+        if (valueHex.length() % 2 != 0) {
+            throw new Iso8583Exception("域[" + field.getIndexString() + "]不是整字节，无法读取到容器");
+        }
+        ensureCapacity(valueHex.length() / 2);
+        this.byteLength = EncodeUtil.hex2Bytes(valueHex, bytes, 0);
+        this.fieldType = field.getFieldType();
+        this.valueLength = field.getLength();
+        this.value = field.getValue();
+    }
+
+    /**
+     * 清空容器，清空后视为不包含任何域
+     */
+    public void clear() {
+        this.fieldType = null;
+        this.valueLength = 0;
+        this.byteLength = 0;
+        this.value = null;
+    }
+
+    public boolean isEmpty() {
+        return fieldType == null;
+    }
+
+    /**
+     * 域索引，容器为空时返回Integer.MIN_VALUE
+     */
+    public int getIndex() {
+        return fieldType == null ? Integer.MIN_VALUE : fieldType.getFieldIndex();
+    }
+
+    public FieldType getFieldType() {
+        return fieldType;
+    }
+
+    public int getValueLength() {
+        return valueLength;
+    }
+
+    /**
+     * 域值部分占用的字节数
+     */
+    public int getByteLength() {
+        return byteLength;
+    }
+
+    /**
+     * <p>内部数组，只有前getByteLength()个字节有效</p>
+     * <p>下次读取域时内容会被覆盖，需要保留时使用copyBytes()</p>
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     * 将域值部分的原始字节复制到调用方提供的数组
+     *
+     * @return 复制的字节数
+     */
+    public int copyBytes(byte[] dst, int offset) {
+        System.arraycopy(bytes, 0, dst, offset, byteLength);
+        return byteLength;
+    }
+
+    /**
+     * 获取域值，第一次调用时生成并缓存
+     */
+    public String getValue() {
+        if (value == null && fieldType != null) {
+            value = fieldType.decodeValue(bytesBuffer, 0, valueLength);
+        }
+        return value;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (bytes.length < capacity) {
+            bytes = new byte[Math.max(capacity, bytes.length * 2)];
+            bytesBuffer = ByteBuffer.wrap(bytes);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FieldHolder{" +
+                "index=" + getIndex() +
+                ", valueLength=" + valueLength +
+                ", byteLength=" + byteLength +
+                ", value='" + getValue() + '\'' +
+                '}';
+    }
+}
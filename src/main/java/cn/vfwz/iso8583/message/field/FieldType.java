@@ -7,11 +7,16 @@ import cn.vfwz.iso8583.exception.Iso8583Exception;
 import cn.vfwz.iso8583.message.Message;
 import cn.vfwz.iso8583.message.MessageConfig;
 import cn.vfwz.iso8583.message.MessageDecoder;
+import cn.vfwz.iso8583.util.CharsetUtil;
+import cn.vfwz.iso8583.util.EncodeUtil;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 
 /**
  * 域类型
@@ -37,7 +42,7 @@ public abstract class FieldType {
     /**
      * 编码格式，ASCII格式的域需要，默认使用GBK编码
      */
-    protected Charset charset = Charset.forName("GBK");
+    protected Charset charset = CharsetUtil.GBK;
 
     /**
      * 数据对齐方向，默认左对齐
@@ -51,6 +56,16 @@ public abstract class FieldType {
 
     protected MessageConfig fieldMessageConfig = null;
 
+    /**
+     * 子域解码器，不修改自身状态，同一域类型的所有域共用；冻结时或第一次解析子域时创建
+     */
+    private volatile MessageDecoder fieldMessageDecoder;
+
+    /**
+     * 冻结时预先计算的编解码参数，未冻结时为null；冻结后不允许修改
+     */
+    private volatile Frozen frozen;
+
 
     FieldType(int fieldIndex, FieldLengthType fieldLengthType, FieldValueType fieldValueType) {
         this.fieldIndex = fieldIndex;
@@ -91,20 +106,100 @@ public abstract class FieldType {
             String valueHex = getValueHex(reader, dataLength, this.alignType);
             String value = this.fieldValueType.decode(valueHex, dataLength, this.alignType, this.charset);
 
-            Message fieldMessage = null;
-            if (this.getFieldMessageConfig() != null) {
-                log.debug("该域[{}]包含子域，根据配置进行解析", fieldIndex);
-                MessageDecoder fieldMessagDeocoder = new MessageDecoder(this.getFieldMessageConfig());
-                fieldMessage = fieldMessagDeocoder.decode(valueHex);
-            }
+            // 子域在第一次访问时才解析，见Field.getFieldMessage()
+            return new Field(this.getFieldIndex(), dataLength, value, lengthHex, valueHex, this);
+        } catch (Exception e) {
+            log.error("解析域[{}]失败", this.fieldIndex, e);
+            throw new Iso8583Exception(e);
+        }
+    }
+
+    /**
+     * 使用当前域格式直接从字节缓冲区中解析域，不经过整包hex字符串转换
+     * 从buffer当前position开始读取，读取完成后position移动到下一个域的开头
+     *
+     * @param buffer 报文字节缓冲区
+     * @return 解析后的域
+     */
+    public Field decodeField(ByteBuffer buffer) {
+        Field field = decodeField(buffer, buffer.position());
+        ((Buffer) buffer).position(buffer.position() + field.getByteLength());
+        return field;
+    }
 
-            return new Field(this.getFieldIndex(), dataLength, value, lengthHex, valueHex, this, fieldMessage);
+    /**
+     * 使用当前域格式从字节缓冲区的指定位置解析域，不改变buffer的position
+     *
+     * @param buffer 报文字节缓冲区
+     * @param offset 域开始位置(包括长度部分)
+     * @return 解析后的域
+     */
+    public Field decodeField(ByteBuffer buffer, int offset) {
+        return decodeField(buffer, offset, null);
+    }
+
+    /**
+     * 解析域，复用调用方不再使用的域对象
+     *
+     * @param buffer 报文字节缓冲区
+     * @param offset 域开始位置(包括长度部分)
+     * @param reuse  可复用的域对象，为null或域类型不同时新建
+     * @return 解析后的域
+     */
+    public Field decodeField(ByteBuffer buffer, int offset, Field reuse) {
+        try {
+            int dataLength = getValueLength(buffer, offset);
+            String lengthHex = getLengthHex(dataLength);
+            byte[] valueBytes = readBytes(buffer, offset + getLengthByteCount(), getValueByteCount(dataLength));
+            String valueHex = EncodeUtil.bytes2Hex(valueBytes);
+            String value = this.fieldValueType.decode(valueBytes, valueHex, dataLength, this.alignType, this.charset);
+
+            // 子域在第一次访问时才解析，见Field.getFieldMessage()
+            return newField(dataLength, value, lengthHex, valueHex, reuse);
         } catch (Exception e) {
             log.error("解析域[{}]失败", this.fieldIndex, e);
             throw new Iso8583Exception(e);
         }
     }
 
+    /**
+     * 从字节缓冲区的指定位置直接解析域值，不生成域对象，不改变buffer的position
+     *
+     * @param buffer      报文字节缓冲区
+     * @param valueOffset 域值部分开始位置
+     * @param valueLength 域值长度
+     * @return 实际域值
+     */
+    public String decodeValue(ByteBuffer buffer, int valueOffset, int valueLength) {
+        int byteCount = getValueByteCount(valueLength);
+        checkRemaining(buffer, valueOffset, byteCount);
+        return this.fieldValueType.decode(buffer, valueOffset, byteCount, valueLength, this.alignType, this.charset);
+    }
+
+    /**
+     * 使用子域配置解析域值，由Field.getFieldMessage()在第一次访问子域时调用
+     *
+     * @param valueHex hex格式的域值
+     * @return 子域报文，没有配置子域格式时返回null
+     */
+    public Message decodeFieldMessage(String valueHex) {
+        if (this.fieldMessageConfig == null) {
+            return null;
+        }
+        MessageDecoder decoder = this.fieldMessageDecoder;
+        if (decoder == null) {
+            decoder = new MessageDecoder(this.fieldMessageConfig);
+            this.fieldMessageDecoder = decoder;
+        }
+        log.debug("解析域[{}]的子域", fieldIndex);
+        try {
+            return decoder.decode(valueHex);
+        } catch (Exception e) {
+            log.error("解析域[{}]的子域失败", this.fieldIndex, e);
+            throw new Iso8583Exception(e);
+        }
+    }
+
     /**
      * 使用当前域格式从hex格式的域值解析域
      *
@@ -124,7 +219,42 @@ public abstract class FieldType {
         }
     }
 
+    /**
+     * 使用当前域格式从字节形式的域值生成域，如TlvWriter组装的55域，不经过hex字符串再解析
+     *
+     * @param valueBytes 域值部分的字节
+     * @param offset     开始位置
+     * @param length     字节数
+     * @return 生成的域
+     */
+    public Field decodeField(byte[] valueBytes, int offset, int length) {
+        try {
+            String valueHex = EncodeUtil.bytes2Hex(valueBytes, offset, length);
+            int valueLength = this.getValueLengthFromValueHex(valueHex);
+            String lengthHex = this.fieldLengthType.encode(valueLength);
+            String value = this.fieldValueType == FieldValueType.ASCII
+                    ? CharsetUtil.decode(Arrays.copyOfRange(valueBytes, offset, offset + length), this.charset)
+                    : this.fieldValueType.decode(valueHex, valueLength, this.alignType, this.charset);
+
+            return new Field(this.getFieldIndex(), valueLength, value, lengthHex, valueHex, this);
+        } catch (Exception e) {
+            log.error("解析域[{}]失败", this.fieldIndex, e);
+            throw new Iso8583Exception(e);
+        }
+    }
+
     public Field encodeField(String value) {
+        return encodeField(value, null);
+    }
+
+    /**
+     * 组装域，复用调用方不再使用的域对象
+     *
+     * @param value 域值
+     * @param reuse 可复用的域对象，为null或域类型不同时新建
+     * @return 组装后的域
+     */
+    public Field encodeField(String value, Field reuse) {
         try {
             int valueLength = getValueLength(value, charset);
             String lengthHex = this.fieldLengthType.encode(valueLength);
@@ -134,15 +264,35 @@ public abstract class FieldType {
                     log.warn("当前域[{}]为变长域，但是数据长度为0，请检查", this);
                 }
             } else {
-                valueHex = this.fieldValueType.encode(value, valueLength, this.alignType, this.padChar, this.charset);
+                valueHex = this.fieldValueType.encode(value, valueLength, this.alignType, getPadHex(), this.charset);
             }
-            return new Field(this.getFieldIndex(), valueLength, value, lengthHex, valueHex, this);
+            return newField(valueLength, value, lengthHex, valueHex, reuse);
         } catch (Exception e) {
             log.error("组装域[{}]时发生异常, value[{}], lengthType[{}], valueType[{}]", value, this.fieldIndex, this.fieldLengthType, this.fieldValueType);
             throw new Iso8583Exception(e);
         }
     }
 
+    /**
+     * 复制当前域类型的域，域值字符串及已解析的子域直接共用
+     *
+     * @param field 当前域类型的域
+     * @param reuse 可复用的域对象，为null或域类型不同时新建
+     * @return 内容相同的另一个域对象
+     */
+    public Field copyField(Field field, Field reuse) {
+        Field copy = newField(field.getLength(), field.getValue(), field.getLengthHex(), field.getValueHex(), reuse);
+        copy.fieldMessage = field.fieldMessage;
+        return copy;
+    }
+
+    private Field newField(int length, String value, String lengthHex, String valueHex, Field reuse) {
+        if (reuse != null && reuse.getFieldType() == this) {
+            return reuse.reset(length, value, lengthHex, valueHex);
+        }
+        return new Field(this.getFieldIndex(), length, value, lengthHex, valueHex, this);
+    }
+
     /**
      * 使用子域报文获取域值
      *
@@ -162,7 +312,7 @@ public abstract class FieldType {
             int valueLength = this.fieldValueType.getValueLengthFromValueHex(subMessageHexString);
             String lengthHex = this.fieldLengthType.encode(valueLength);
 
-            String valueHex = this.fieldValueType.pad(subMessageHexString, 0, this.alignType, this.padChar, this.charset);
+            String valueHex = this.fieldValueType.pad(subMessageHexString, 0, this.alignType, getPadHex());
             String value = this.fieldValueType.decode(valueHex, valueLength, this.alignType, this.charset);
 
             return new Field(this.getFieldIndex(), valueLength, value, lengthHex, valueHex, this);
@@ -186,6 +336,15 @@ public abstract class FieldType {
      */
     protected abstract int getValueLength(Reader reader);
 
+    /**
+     * 从字节缓冲区的指定位置获得当前域的长度，不改变buffer的position
+     *
+     * @param buffer 报文字节缓冲区
+     * @param offset 域开始位置(包括长度部分)
+     * @return 当前域值长度
+     */
+    public abstract int getValueLength(ByteBuffer buffer, int offset);
+
     protected abstract String getLengthHex(int valueLength);
 
     /**
@@ -201,6 +360,30 @@ public abstract class FieldType {
         return readHexChar(reader, hexCount);
     }
 
+    /**
+     * 根据域值长度获取域值部分所占字节数
+     * BCD类型不对齐且长度为奇数时只占半个字节，无法按字节解析
+     *
+     * @param valueLength 域值的长度
+     * @return 域值部分字节数
+     */
+    public int getValueByteCount(int valueLength) {
+        int hexCount = this.fieldValueType.getHexCount(valueLength, this.alignType);
+        if (hexCount % 2 != 0) {
+            throw new Iso8583Exception("域[" + this.fieldIndex + "]值部分hex长度[" + hexCount + "]不是整字节，无法按字节解析");
+        }
+        return hexCount / 2;
+    }
+
+    /**
+     * 当前域是否总是占用整字节，BCD类型不对齐的域可能只占半个字节
+     *
+     * @return 整字节返回true
+     */
+    public boolean isByteAligned() {
+        return this.fieldValueType != FieldValueType.BCD || this.alignType != AlignType.NONE;
+    }
+
     /**
      * 根据域值的Hex值获取实际数据长度
      *
@@ -230,12 +413,120 @@ public abstract class FieldType {
         return new String(chars);
     }
 
+    /**
+     * 从字节缓冲区的指定位置读取指定数量的字节，不改变buffer的position
+     *
+     * @param buffer 报文字节缓冲区
+     * @param offset 读取位置
+     * @param count  读取数量
+     * @return 读取到的字节
+     */
+    protected byte[] readBytes(ByteBuffer buffer, int offset, int count) {
+        checkRemaining(buffer, offset, count);
+        byte[] bytes = new byte[count];
+        if (buffer.hasArray()) {
+            System.arraycopy(buffer.array(), buffer.arrayOffset() + offset, bytes, 0, count);
+        } else {
+            for (int i = 0; i < count; i++) {
+                bytes[i] = buffer.get(offset + i);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 检查缓冲区在指定位置之后是否还有足够的数据
+     */
+    protected void checkRemaining(ByteBuffer buffer, int offset, int count) {
+        if (buffer.limit() - offset < count) {
+            throw new Iso8583Exception("报文剩余长度[" + (buffer.limit() - offset) + "]不足，需要读取[" + count + "]字节");
+        }
+    }
+
+    /**
+     * 冻结当前域类型，预先计算域长字节数、填充字符等编解码参数，子域配置一并冻结
+     *
+     * @return 当前域类型
+     */
+    public FieldType freeze() {
+        if (frozen != null) {
+            return this;
+        }
+        if (this.fieldMessageConfig != null) {
+            this.fieldMessageConfig.freeze();
+            this.fieldMessageDecoder = new MessageDecoder(this.fieldMessageConfig);
+        }
+        this.frozen = new Frozen(this.fieldLengthType.getHexCount() / 2,
+                this.fieldValueType.getPadHex(this.padChar, this.charset), frozenValueByteCount());
+        return this;
+    }
+
+    /**
+     * 冻结时预先计算的域值字节数，只有定长域可以预先计算
+     *
+     * @return 不能预先计算时返回-1
+     */
+    protected int frozenValueByteCount() {
+        return -1;
+    }
+
+    public boolean isFrozen() {
+        return frozen != null;
+    }
+
+    /**
+     * 获取域长部分字节数
+     */
+    public int getLengthByteCount() {
+        Frozen params = this.frozen;
+        return params != null ? params.lengthByteCount : this.fieldLengthType.getHexCount() / 2;
+    }
+
+    /**
+     * 获取填充字符在当前域值类型下的hex形式
+     */
+    protected String getPadHex() {
+        Frozen params = this.frozen;
+        return params != null ? params.padHex : this.fieldValueType.getPadHex(this.padChar, this.charset);
+    }
+
+    /**
+     * 冻结时预先计算的域值字节数
+     *
+     * @return 未冻结或不能预先计算时返回-1
+     */
+    int getFrozenValueByteCount() {
+        Frozen params = this.frozen;
+        return params != null ? params.valueByteCount : -1;
+    }
+
+    /**
+     * 冻结时预先计算的编解码参数，字段均为final，通过volatile引用整体发布，
+     * 冻结后的域类型不依赖MessageConfig的发布方式即可在多线程间共享
+     */
+    private static final class Frozen {
+
+        private final int lengthByteCount;
+        private final String padHex;
+        private final int valueByteCount;
+
+        Frozen(int lengthByteCount, String padHex, int valueByteCount) {
+            this.lengthByteCount = lengthByteCount;
+            this.padHex = padHex;
+            this.valueByteCount = valueByteCount;
+        }
+    }
+
     public MessageConfig getFieldMessageConfig() {
         return fieldMessageConfig;
     }
 
     public FieldType setFieldMessageConfig(MessageConfig fieldMessageConfig) {
+        if (frozen != null) {
+            throw new Iso8583Exception("域类型[" + this.fieldIndex + "]已冻结，不允许修改子域配置");
+        }
         this.fieldMessageConfig = fieldMessageConfig;
+        this.fieldMessageDecoder = null;
         return this;
     }
 
@@ -5,6 +5,7 @@ import cn.vfwz.iso8583.enumeration.FieldLengthType;
 import cn.vfwz.iso8583.enumeration.FieldValueType;
 
 import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 
 /**
@@ -54,6 +55,35 @@ public class FixedFieldType extends FieldType {
         return this.dataLength;
     }
 
+    @Override
+    public int getValueLength(ByteBuffer buffer, int offset) {
+        return this.dataLength;
+    }
+
+    @Override
+    public int getValueByteCount(int valueLength) {
+        if (valueLength == this.dataLength) {
+            int valueByteCount = getFrozenValueByteCount();
+            if (valueByteCount >= 0) {
+                return valueByteCount;
+            }
+        }
+        return super.getValueByteCount(valueLength);
+    }
+
+    /**
+     * 整字节的定长域冻结时预先计算域值字节数，半字节域返回-1
+     */
+    @Override
+    protected int frozenValueByteCount() {
+        return isByteAligned() ? super.getValueByteCount(this.dataLength) : -1;
+    }
+
+    @Override
+    public boolean isByteAligned() {
+        return this.fieldValueType.getHexCount(this.dataLength, this.alignType) % 2 == 0;
+    }
+
     @Override
     protected String getLengthHex(int valueLength) {
         // 定长域没有长度部分
@@ -6,6 +6,7 @@ import cn.vfwz.iso8583.enumeration.FieldValueType;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 
 /**
@@ -61,6 +62,12 @@ public class VariableFieldType extends FieldType {
         return this.fieldLengthType.decode(lengthHex);
     }
 
+    @Override
+    public int getValueLength(ByteBuffer buffer, int offset) {
+        checkRemaining(buffer, offset, getLengthByteCount());
+        return this.fieldLengthType.readLength(buffer, offset);
+    }
+
     @Override
     protected String getLengthHex(int valueLength) {
         return this.fieldLengthType.encode(valueLength);
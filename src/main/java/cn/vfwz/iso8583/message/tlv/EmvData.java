@@ -0,0 +1,342 @@
+package cn.vfwz.iso8583.message.tlv;
+
+import cn.vfwz.iso8583.constant.FieldIndex;
+import cn.vfwz.iso8583.exception.Iso8583Exception;
+import cn.vfwz.iso8583.message.Message;
+import cn.vfwz.iso8583.message.MessageView;
+import cn.vfwz.iso8583.message.field.Field;
+import cn.vfwz.iso8583.util.CharsetUtil;
+import cn.vfwz.iso8583.util.EncodeUtil;
+
+import java.util.Arrays;
+
+/**
+ * <p>55域IC卡数据视图，wrap()时建立标签索引，并将授权常用的标签一次解码到基本类型中</p>
+ * <p>常用标签：9F26应用密文、9F27密文信息数据、9F10发卡行应用数据、9F36应用交易计数器、95终端验证结果、
+ * 9A交易日期、9C交易类型、9F02授权金额、9F03其他金额、5F2A交易货币代码、9F1A终端国家代码、9F37不可预知数</p>
+ * <p>常用标签的长度按{@link EmvTag}检查，不符合时wrap()失败；其他标签通过getValue()等按需读取</p>
+ * <p>通过wrap()重新指向新的数据，每个工作线程持有一个实例即可反复使用；非线程安全</p>
+ */
+public class EmvData {
+
+    /**
+     * 数值类标签不存在时的返回值
+     */
+    public static final int ABSENT = -1;
+
+    private final TlvReader reader = new TlvReader();
+    /**
+     * 从报文中复制55域使用的缓冲区
+     */
+    private byte[] scratch = new byte[256];
+
+    private final byte[] arqc = new byte[8];
+    private boolean hasArqc;
+    private int cryptogramInformationData;
+    private int atc;
+    private long tvr;
+    private int transactionDate;
+    private int transactionType;
+    private long amountAuthorised;
+    private long amountOther;
+    private int transactionCurrencyCode;
+    private int terminalCountryCode;
+    private long unpredictableNumber;
+
+    public EmvData wrap(byte[] data) {
+        return wrap(data, 0, data.length);
+    }
+
+    /**
+     * <p>指向字节形式的55域值</p>
+     * <p>常用标签全部检查通过后才更新，wrap()失败时常用标签均为不存在</p>
+     *
+     * @param data   55域值
+     * @param offset 开始位置
+     * @param length 长度
+     * @return 当前实例
+     * @throws Iso8583Exception TLV格式错误或常用标签长度不正确
+     */
+    public EmvData wrap(byte[] data, int offset, int length) {
+        reset();
+        reader.wrap(data, offset, length);
+        int arqcOffset = checkLength(EmvTag.APPLICATION_CRYPTOGRAM);
+        int cid = (int) readBinary(EmvTag.CRYPTOGRAM_INFORMATION_DATA);
+        int atc = (int) readBinary(EmvTag.APPLICATION_TRANSACTION_COUNTER);
+        long tvr = readBinary(EmvTag.TERMINAL_VERIFICATION_RESULTS);
+        int transactionDate = (int) readNumeric(EmvTag.TRANSACTION_DATE);
+        int transactionType = (int) readNumeric(EmvTag.TRANSACTION_TYPE);
+        long amountAuthorised = readNumeric(EmvTag.AMOUNT_AUTHORISED);
+        long amountOther = readNumeric(EmvTag.AMOUNT_OTHER);
+        int transactionCurrencyCode = (int) readNumeric(EmvTag.TRANSACTION_CURRENCY_CODE);
+        int terminalCountryCode = (int) readNumeric(EmvTag.TERMINAL_COUNTRY_CODE);
+        long unpredictableNumber = readBinary(EmvTag.UNPREDICTABLE_NUMBER);
+        checkLength(EmvTag.ISSUER_APPLICATION_DATA);
+
+        if (arqcOffset >= 0) {
+            System.arraycopy(reader.getData(), arqcOffset, arqc, 0, arqc.length);
+            hasArqc = true;
+        }
+        this.cryptogramInformationData = cid;
+        this.atc = atc;
+        this.tvr = tvr;
+        this.transactionDate = transactionDate;
+        this.transactionType = transactionType;
+        this.amountAuthorised = amountAuthorised;
+        this.amountOther = amountOther;
+        this.transactionCurrencyCode = transactionCurrencyCode;
+        this.terminalCountryCode = terminalCountryCode;
+        this.unpredictableNumber = unpredictableNumber;
+        return this;
+    }
+
+    /**
+     * 指向报文的55域
+     *
+     * @return 报文中没有55域时返回null
+     */
+    public EmvData wrap(Message message) {
+        Field field = message.getField(FieldIndex.F55);
+        return field == null ? null : wrap(field.getValueBytes());
+    }
+
+    /**
+     * 指向报文视图的55域，域值复制到内部缓冲区
+     *
+     * @return 报文中没有55域时返回null
+     */
+    public EmvData wrap(MessageView view) {
+        int length = view.getValueByteLength(FieldIndex.F55);
+        if (length < 0) {
+            return null;
+        }
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        view.getBytes(FieldIndex.F55, scratch, 0);
+        return wrap(scratch, 0, length);
+    }
+
+    /**
+     * 9F26应用密文，不存在时返回null
+     */
+    public byte[] getArqc() {
+        return hasArqc ? arqc.clone() : null;
+    }
+
+    /**
+     * 将9F26应用密文复制到dst
+     *
+     * @return 复制的字节数，不存在时返回-1
+     */
+    public int getArqc(byte[] dst, int offset) {
+        if (!hasArqc) {
+            return ABSENT;
+        }
+        System.arraycopy(arqc, 0, dst, offset, arqc.length);
+        return arqc.length;
+    }
+
+    /**
+     * 9F27密文信息数据，不存在时返回-1
+     */
+    public int getCryptogramInformationData() {
+        return cryptogramInformationData;
+    }
+
+    /**
+     * 9F10发卡行应用数据，不存在时返回null
+     */
+    public byte[] getIad() {
+        return reader.getValue(EmvTag.ISSUER_APPLICATION_DATA.getTag());
+    }
+
+    /**
+     * 9F36应用交易计数器，不存在时返回-1
+     */
+    public int getAtc() {
+        return atc;
+    }
+
+    /**
+     * 95终端验证结果，5字节按大端序组成的数值，不存在时返回-1
+     */
+    public long getTvr() {
+        return tvr;
+    }
+
+    /**
+     * 9A交易日期YYMMDD，不存在时返回-1
+     */
+    public int getTransactionDate() {
+        return transactionDate;
+    }
+
+    /**
+     * 9C交易类型，不存在时返回-1
+     */
+    public int getTransactionType() {
+        return transactionType;
+    }
+
+    /**
+     * 9F02授权金额，单位为分，不存在时返回-1
+     */
+    public long getAmountAuthorised() {
+        return amountAuthorised;
+    }
+
+    /**
+     * 9F03其他金额，单位为分，不存在时返回-1
+     */
+    public long getAmountOther() {
+        return amountOther;
+    }
+
+    /**
+     * 5F2A交易货币代码，如156，不存在时返回-1
+     */
+    public int getTransactionCurrencyCode() {
+        return transactionCurrencyCode;
+    }
+
+    /**
+     * 9F1A终端国家代码，如156，不存在时返回-1
+     */
+    public int getTerminalCountryCode() {
+        return terminalCountryCode;
+    }
+
+    /**
+     * 9F37不可预知数，不存在时返回-1
+     */
+    public long getUnpredictableNumber() {
+        return unpredictableNumber;
+    }
+
+    public boolean contains(int tag) {
+        return reader.contains(tag);
+    }
+
+    /**
+     * 任意标签的值，不存在时返回null
+     */
+    public byte[] getValue(int tag) {
+        return reader.getValue(tag);
+    }
+
+    public String getValueHex(int tag) {
+        return reader.getValueHex(tag);
+    }
+
+    /**
+     * <p>按字典中的格式将标签的值转为字符串，不在字典中的标签按hex</p>
+     * <p>n/b格式按hex输出（n格式保留左侧补的0），cn格式去掉右侧补的F，an/ans按字符解码</p>
+     *
+     * @return 不存在时返回null
+     */
+    public String getString(int tag) {
+        int offset = reader.getValueOffset(tag);
+        if (offset < 0) {
+            return null;
+        }
+        int length = reader.getValueLength(tag);
+        EmvTag emvTag = EmvTag.of(tag);
+        if (emvTag == null) {
+            return EncodeUtil.bytes2Hex(reader.getData(), offset, length);
+        }
+        switch (emvTag.getFormat()) {
+            case CN:
+                String digits = EncodeUtil.bytes2Hex(reader.getData(), offset, length);
+                int end = digits.indexOf('F');
+                return end < 0 ? digits : digits.substring(0, end);
+            case AN:
+            case ANS:
+                return CharsetUtil.decode(Arrays.copyOfRange(reader.getData(), offset, offset + length), CharsetUtil.GBK);
+            default:
+                return EncodeUtil.bytes2Hex(reader.getData(), offset, length);
+        }
+    }
+
+    /**
+     * 结构标签的子标签迭代器，如71/72发卡行脚本
+     */
+    public TlvIterator children(int tag) {
+        return reader.children(tag);
+    }
+
+    /**
+     * 底层的标签索引，用于按顺序遍历所有标签
+     */
+    public TlvReader getReader() {
+        return reader;
+    }
+
+    /**
+     * 常用标签全部置为不存在
+     */
+    private void reset() {
+        hasArqc = false;
+        cryptogramInformationData = ABSENT;
+        atc = ABSENT;
+        tvr = ABSENT;
+        transactionDate = ABSENT;
+        transactionType = ABSENT;
+        amountAuthorised = ABSENT;
+        amountOther = ABSENT;
+        transactionCurrencyCode = ABSENT;
+        terminalCountryCode = ABSENT;
+        unpredictableNumber = ABSENT;
+    }
+
+    /**
+     * b格式按大端序转为数值
+     */
+    private long readBinary(EmvTag emvTag) {
+        int offset = checkLength(emvTag);
+        if (offset < 0) {
+            return ABSENT;
+        }
+        byte[] data = reader.getData();
+        long value = 0;
+        for (int i = offset, end = offset + reader.getValueLength(emvTag.getTag()); i < end; i++) {
+            value = value << 8 | (data[i] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * n格式BCD转为数值
+     */
+    private long readNumeric(EmvTag emvTag) {
+        int offset = checkLength(emvTag);
+        if (offset < 0) {
+            return ABSENT;
+        }
+        byte[] data = reader.getData();
+        long value = 0;
+        for (int i = offset, end = offset + reader.getValueLength(emvTag.getTag()); i < end; i++) {
+            int high = (data[i] >> 4) & 0x0F;
+            int low = data[i] & 0x0F;
+            if (high > 9 || low > 9) {
+                throw new Iso8583Exception("tlv标签[" + emvTag.getTagHex() + "]" + emvTag.getDescription() + "不是有效的数字");
+            }
+            value = value * 100 + high * 10 + low;
+        }
+        return value;
+    }
+
+    /**
+     * 检查标签值的长度
+     *
+     * @return 值的开始位置，不存在时返回-1
+     */
+    private int checkLength(EmvTag emvTag) {
+        int offset = reader.getValueOffset(emvTag.getTag());
+        if (offset >= 0 && !emvTag.isValidLength(reader.getValueLength(emvTag.getTag()))) {
+            throw new Iso8583Exception("tlv标签[" + emvTag.getTagHex() + "]" + emvTag.getDescription()
+                    + "长度[" + reader.getValueLength(emvTag.getTag()) + "]不正确");
+        }
+        return offset;
+    }
+}
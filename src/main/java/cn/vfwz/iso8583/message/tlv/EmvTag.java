@@ -0,0 +1,137 @@
+package cn.vfwz.iso8583.message.tlv;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>55域中常用的EMV标签，记录标签的数据格式及值的字节数范围</p>
+ * <p>参考EMV 4.3 Book 3附录A及银联IC卡规范</p>
+ */
+public enum EmvTag {
+
+    APPLICATION_CRYPTOGRAM(0x9F26, Format.B, 8, 8, "应用密文"),
+    CRYPTOGRAM_INFORMATION_DATA(0x9F27, Format.B, 1, 1, "密文信息数据"),
+    ISSUER_APPLICATION_DATA(0x9F10, Format.B, 1, 32, "发卡行应用数据"),
+    UNPREDICTABLE_NUMBER(0x9F37, Format.B, 4, 4, "不可预知数"),
+    APPLICATION_TRANSACTION_COUNTER(0x9F36, Format.B, 2, 2, "应用交易计数器"),
+    TERMINAL_VERIFICATION_RESULTS(0x95, Format.B, 5, 5, "终端验证结果"),
+    TRANSACTION_DATE(0x9A, Format.N, 3, 3, "交易日期"),
+    TRANSACTION_TYPE(0x9C, Format.N, 1, 1, "交易类型"),
+    AMOUNT_AUTHORISED(0x9F02, Format.N, 6, 6, "授权金额"),
+    AMOUNT_OTHER(0x9F03, Format.N, 6, 6, "其他金额"),
+    TRANSACTION_CURRENCY_CODE(0x5F2A, Format.N, 2, 2, "交易货币代码"),
+    APPLICATION_INTERCHANGE_PROFILE(0x82, Format.B, 2, 2, "应用交互特征"),
+    TERMINAL_COUNTRY_CODE(0x9F1A, Format.N, 2, 2, "终端国家代码"),
+    TERMINAL_CAPABILITIES(0x9F33, Format.B, 3, 3, "终端性能"),
+    CVM_RESULTS(0x9F34, Format.B, 3, 3, "持卡人验证方法结果"),
+    TERMINAL_TYPE(0x9F35, Format.N, 1, 1, "终端类型"),
+    INTERFACE_DEVICE_SERIAL_NUMBER(0x9F1E, Format.AN, 8, 8, "接口设备序列号"),
+    DEDICATED_FILE_NAME(0x84, Format.B, 5, 16, "专用文件名称"),
+    APPLICATION_VERSION_NUMBER(0x9F09, Format.B, 2, 2, "应用版本号"),
+    TRANSACTION_SEQUENCE_COUNTER(0x9F41, Format.N, 2, 4, "交易序列计数器"),
+    CARD_PRODUCT_ID(0x9F63, Format.B, 16, 16, "卡产品标识信息"),
+    PAN(0x5A, Format.CN, 1, 10, "应用主账号"),
+    PAN_SEQUENCE_NUMBER(0x5F34, Format.N, 1, 1, "应用主账号序列号"),
+    TRACK2_EQUIVALENT_DATA(0x57, Format.B, 1, 19, "二磁道等效数据"),
+    AUTHORISATION_RESPONSE_CODE(0x8A, Format.AN, 2, 2, "授权响应码"),
+    ISSUER_AUTHENTICATION_DATA(0x91, Format.B, 8, 16, "发卡行认证数据"),
+    ISSUER_SCRIPT_TEMPLATE_1(0x71, Format.B, 0, 128, "发卡行脚本1"),
+    ISSUER_SCRIPT_TEMPLATE_2(0x72, Format.B, 0, 128, "发卡行脚本2"),
+    ISSUER_SCRIPT_IDENTIFIER(0x9F18, Format.B, 4, 4, "发卡行脚本标识"),
+    ISSUER_SCRIPT_COMMAND(0x86, Format.B, 1, 261, "发卡行脚本命令"),
+    ISSUER_SCRIPT_RESULTS(0xDF31, Format.B, 1, 128, "发卡行脚本结果");
+
+    /**
+     * 值的数据格式
+     */
+    public enum Format {
+        /**
+         * 数字，BCD右对齐，左补0
+         */
+        N,
+        /**
+         * 压缩数字，BCD左对齐，右补F
+         */
+        CN,
+        /**
+         * 二进制
+         */
+        B,
+        /**
+         * 字母数字
+         */
+        AN,
+        /**
+         * 字母数字及特殊字符
+         */
+        ANS
+    }
+
+    private static final Map<Integer, EmvTag> TAGS = new HashMap<>();
+
+    static {
+        for (EmvTag emvTag : values()) {
+            TAGS.put(emvTag.tag, emvTag);
+        }
+    }
+
+    private final int tag;
+    private final Format format;
+    private final int minLength;
+    private final int maxLength;
+    private final String description;
+
+    EmvTag(int tag, Format format, int minLength, int maxLength, String description) {
+        this.tag = tag;
+        this.format = format;
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+        this.description = description;
+    }
+
+    /**
+     * 根据标签查找
+     *
+     * @return 不在字典中时返回null
+     */
+    public static EmvTag of(int tag) {
+        return TAGS.get(tag);
+    }
+
+    public int getTag() {
+        return tag;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * 值的最小字节数
+     */
+    public int getMinLength() {
+        return minLength;
+    }
+
+    /**
+     * 值的最大字节数
+     */
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * 值的字节数是否在范围内
+     */
+    public boolean isValidLength(int length) {
+        return length >= minLength && length <= maxLength;
+    }
+
+    public String getTagHex() {
+        return TlvReader.tagHex(tag);
+    }
+}
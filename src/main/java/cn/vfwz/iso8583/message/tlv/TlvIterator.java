@@ -0,0 +1,193 @@
+package cn.vfwz.iso8583.message.tlv;
+
+import cn.vfwz.iso8583.exception.Iso8583Exception;
+import cn.vfwz.iso8583.util.EncodeUtil;
+
+import java.util.Arrays;
+
+/**
+ * <p>按顺序逐个读取一段TLV数据，next()每次只解码一个标签和长度，不建立索引也不复制数据</p>
+ * <p>结构标签（标签首字节bit6为1，如70、77、E1、71、72）通过children()得到子标签的迭代器，
+ * 子迭代器与当前迭代器引用同一数组中该标签的值部分，只有实际读取时才解码子标签</p>
+ * <p>非线程安全；在使用期间不能修改被引用的数组内容</p>
+ */
+public class TlvIterator {
+
+    /**
+     * int可表示的最大标签字节数
+     */
+    private static final int MAX_TAG_BYTES = 4;
+    /**
+     * 长度部分除首字节外最多的字节数
+     */
+    private static final int MAX_LENGTH_BYTES = 3;
+
+    private byte[] data;
+    private int start;
+    private int position;
+    private int end;
+    /**
+     * 当前标签，next()返回true后有效
+     */
+    private int tag;
+    private int valueOffset;
+    private int valueLength;
+
+    public TlvIterator() {
+    }
+
+    public TlvIterator(byte[] data) {
+        reset(data, 0, data.length);
+    }
+
+    public TlvIterator(byte[] data, int offset, int length) {
+        reset(data, offset, length);
+    }
+
+    /**
+     * 指向数组中的一段TLV数据，从头开始读取
+     */
+    public TlvIterator reset(byte[] data, int offset, int length) {
+        this.data = data;
+        this.start = offset;
+        this.position = offset;
+        this.end = offset + length;
+        this.tag = 0;
+        this.valueOffset = -1;
+        this.valueLength = -1;
+        return this;
+    }
+
+    /**
+     * 读取下一个标签
+     *
+     * @return 没有更多数据时返回false
+     * @throws Iso8583Exception TLV格式错误
+     */
+    public boolean next() {
+        if (position >= end) {
+            this.valueOffset = -1;
+            this.valueLength = -1;
+            return false;
+        }
+        // 标签：首字节后5位全为1时后续还有字节，后续字节最高位为1时继续
+        int tag = data[position++] & 0xFF;
+        if ((tag & 0x1F) == 0x1F) {
+            int tagBytes = 1;
+            int b;
+            do {
+                if (position >= end || ++tagBytes > MAX_TAG_BYTES) {
+                    throw new Iso8583Exception("不正确的tlv标签，位置:" + (position - start));
+                }
+                b = data[position++] & 0xFF;
+                tag = tag << 8 | b;
+            } while ((b & 0x80) != 0);
+        }
+        if (position >= end) {
+            throw new Iso8583Exception("tlv标签[" + TlvReader.tagHex(tag) + "]缺少长度");
+        }
+        // 长度：最高位为0时即为长度，否则后7位为之后表示长度的字节数
+        int valueLength = data[position++] & 0xFF;
+        if (valueLength > 0x7F) {
+            int lengthBytes = valueLength & 0x7F;
+            if (lengthBytes == 0 || lengthBytes > MAX_LENGTH_BYTES || position + lengthBytes > end) {
+                throw new Iso8583Exception("tlv标签[" + TlvReader.tagHex(tag) + "]长度不正确");
+            }
+            valueLength = 0;
+            for (int i = 0; i < lengthBytes; i++) {
+                valueLength = valueLength << 8 | (data[position++] & 0xFF);
+            }
+        }
+        if (valueLength > end - position) {
+            throw new Iso8583Exception("tlv标签[" + TlvReader.tagHex(tag) + "]数据长度不足");
+        }
+        this.tag = tag;
+        this.valueOffset = position;
+        this.valueLength = valueLength;
+        position += valueLength;
+        return true;
+    }
+
+    /**
+     * 从当前位置向后查找同一层的标签，不进入结构标签内部
+     *
+     * @return 找到时返回true，当前标签即为该标签；找不到时读取到末尾并返回false
+     */
+    public boolean find(int tag) {
+        while (next()) {
+            if (this.tag == tag) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getTag() {
+        checkCurrent();
+        return tag;
+    }
+
+    public int getValueOffset() {
+        checkCurrent();
+        return valueOffset;
+    }
+
+    public int getValueLength() {
+        checkCurrent();
+        return valueLength;
+    }
+
+    public boolean isConstructed() {
+        return isConstructed(getTag());
+    }
+
+    public byte[] getValue() {
+        checkCurrent();
+        return Arrays.copyOfRange(data, valueOffset, valueOffset + valueLength);
+    }
+
+    public String getValueHex() {
+        checkCurrent();
+        return EncodeUtil.bytes2Hex(data, valueOffset, valueLength);
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * 当前结构标签的子标签迭代器
+     *
+     * @throws Iso8583Exception 当前标签不是结构标签
+     */
+    public TlvIterator children() {
+        return children(new TlvIterator());
+    }
+
+    /**
+     * 使用传入的迭代器读取当前结构标签的子标签，逐层遍历时可复用迭代器
+     *
+     * @param reuse 被重新指向的迭代器
+     * @return reuse
+     */
+    public TlvIterator children(TlvIterator reuse) {
+        if (!isConstructed()) {
+            throw new Iso8583Exception("tlv标签[" + TlvReader.tagHex(tag) + "]不是结构标签");
+        }
+        return reuse.reset(data, valueOffset, valueLength);
+    }
+
+    /**
+     * 是否为结构标签：标签首字节的bit6为1
+     */
+    public static boolean isConstructed(int tag) {
+        int first = tag >>> ((TlvWriter.tagByteCount(tag) - 1) * 8);
+        return (first & 0x20) != 0;
+    }
+
+    private void checkCurrent() {
+        if (valueOffset < 0) {
+            throw new Iso8583Exception("TlvIterator当前没有标签，请先调用next()");
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package cn.vfwz.iso8583.message.tlv;
+
+import cn.vfwz.iso8583.exception.Iso8583Exception;
+import cn.vfwz.iso8583.util.EncodeUtil;
+
+import java.util.Arrays;
+
+/**
+ * <p>直接读取字节形式的TLV数据（如55域），标签以int表示，如0x9F26、0x95</p>
+ * <p>wrap()时扫描一遍，记录每个标签的值位置并建立标签到位置的开放寻址索引，之后按标签读取不再扫描，也不生成TLVObject</p>
+ * <p>通过wrap()重新指向新的数据，每个工作线程持有一个实例即可反复使用；同一标签出现多次时按标签读取返回第一个</p>
+ * <p>索引中只有最外层的标签，结构标签的子标签通过{@link #children(int)}按需读取</p>
+ * <p>非线程安全；在使用期间不能修改被引用的数组内容</p>
+ */
+public class TlvReader {
+
+    private final TlvIterator iterator = new TlvIterator();
+    private byte[] data;
+    /**
+     * 按出现顺序记录的标签及值的位置
+     */
+    private int count;
+    private int[] tags = new int[16];
+    private int[] valueOffsets = new int[16];
+    private int[] valueLengths = new int[16];
+    /**
+     * 开放寻址表，存放序号+1，0表示空位；容量为2的幂，至少为标签个数的2倍
+     */
+    private int[] slots = new int[32];
+
+    public TlvReader wrap(byte[] data) {
+        return wrap(data, 0, data.length);
+    }
+
+    /**
+     * 指向数组中的一段TLV数据并建立索引
+     *
+     * @param data   TLV数据
+     * @param offset 开始位置
+     * @param length 长度
+     * @return 当前实例
+     * @throws Iso8583Exception TLV格式错误
+     */
+    public TlvReader wrap(byte[] data, int offset, int length) {
+        // 扫描失败时不指向任何数据
+        this.data = null;
+        this.count = 0;
+        Arrays.fill(slots, 0);
+        iterator.reset(data, offset, length);
+        while (iterator.next()) {
+            add(iterator.getTag(), iterator.getValueOffset(), iterator.getValueLength());
+        }
+        this.data = data;
+        return this;
+    }
+
+    /**
+     * 标签个数，包括重复出现的标签
+     */
+    public int getTagCount() {
+        return count;
+    }
+
+    /**
+     * 按出现顺序的第i个标签
+     */
+    public int getTagAt(int i) {
+        checkIndex(i);
+        return tags[i];
+    }
+
+    public int getValueOffsetAt(int i) {
+        checkIndex(i);
+        return valueOffsets[i];
+    }
+
+    public int getValueLengthAt(int i) {
+        checkIndex(i);
+        return valueLengths[i];
+    }
+
+    public boolean contains(int tag) {
+        return find(tag) >= 0;
+    }
+
+    /**
+     * 标签的值在数组中的位置，标签不存在时返回-1
+     */
+    public int getValueOffset(int tag) {
+        int i = find(tag);
+        return i < 0 ? -1 : valueOffsets[i];
+    }
+
+    /**
+     * 标签的值的字节数，标签不存在时返回-1
+     */
+    public int getValueLength(int tag) {
+        int i = find(tag);
+        return i < 0 ? -1 : valueLengths[i];
+    }
+
+    /**
+     * 标签的值，标签不存在时返回null
+     */
+    public byte[] getValue(int tag) {
+        int i = find(tag);
+        return i < 0 ? null : Arrays.copyOfRange(data, valueOffsets[i], valueOffsets[i] + valueLengths[i]);
+    }
+
+    /**
+     * 将标签的值复制到dst
+     *
+     * @return 复制的字节数，标签不存在时返回-1
+     */
+    public int getValue(int tag, byte[] dst, int offset) {
+        int i = find(tag);
+        if (i < 0) {
+            return -1;
+        }
+        System.arraycopy(data, valueOffsets[i], dst, offset, valueLengths[i]);
+        return valueLengths[i];
+    }
+
+    /**
+     * 标签的值的hex形式，标签不存在时返回null
+     */
+    public String getValueHex(int tag) {
+        int i = find(tag);
+        return i < 0 ? null : EncodeUtil.bytes2Hex(data, valueOffsets[i], valueLengths[i]);
+    }
+
+    public boolean isConstructedAt(int i) {
+        return TlvIterator.isConstructed(getTagAt(i));
+    }
+
+    /**
+     * 结构标签的子标签迭代器，引用同一数组中该标签的值部分，读取时才解码
+     *
+     * @param tag 结构标签，如0x70、0x72
+     * @return 标签不存在时返回null
+     * @throws Iso8583Exception 标签不是结构标签
+     */
+    public TlvIterator children(int tag) {
+        int i = find(tag);
+        return i < 0 ? null : childrenAt(i);
+    }
+
+    /**
+     * 按出现顺序的第i个标签的子标签迭代器，同一结构标签出现多次时使用（如多个72脚本）
+     */
+    public TlvIterator childrenAt(int i) {
+        if (!isConstructedAt(i)) {
+            throw new Iso8583Exception("tlv标签[" + tagHex(tags[i]) + "]不是结构标签");
+        }
+        return new TlvIterator(data, valueOffsets[i], valueLengths[i]);
+    }
+
+    /**
+     * 当前指向的数组
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * int形式的标签转为hex，如0x9F26转为"9F26"
+     */
+    public static String tagHex(int tag) {
+        byte[] bytes = new byte[TlvWriter.tagByteCount(tag)];
+        TlvWriter.writeTag(tag, bytes, 0);
+        return EncodeUtil.bytes2Hex(bytes);
+    }
+
+    private void add(int tag, int valueOffset, int valueLength) {
+        if (count == tags.length) {
+            int capacity = count * 2;
+            tags = Arrays.copyOf(tags, capacity);
+            valueOffsets = Arrays.copyOf(valueOffsets, capacity);
+            valueLengths = Arrays.copyOf(valueLengths, capacity);
+        }
+        tags[count] = tag;
+        valueOffsets[count] = valueOffset;
+        valueLengths[count] = valueLength;
+        count++;
+        if (count * 2 > slots.length) {
+            slots = new int[slots.length * 2];
+            for (int i = 0; i < count; i++) {
+                index(i);
+            }
+        } else {
+            index(count - 1);
+        }
+    }
+
+    /**
+     * 加入开放寻址表，标签已存在时保留先出现的
+     */
+    private void index(int i) {
+        int mask = slots.length - 1;
+        for (int slot = hash(tags[i]) & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                slots[slot] = i + 1;
+                return;
+            }
+            if (tags[entry - 1] == tags[i]) {
+                return;
+            }
+        }
+    }
+
+    private int find(int tag) {
+        if (data == null) {
+            throw new Iso8583Exception("TlvReader未指向任何数据，请先调用wrap()");
+        }
+        int mask = slots.length - 1;
+        for (int slot = hash(tag) & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            if (tags[entry - 1] == tag) {
+                return entry - 1;
+            }
+        }
+    }
+
+    private static int hash(int tag) {
+        int h = tag * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= count) {
+            throw new Iso8583Exception("tlv序号[" + i + "]超出范围，共" + count + "个标签");
+        }
+    }
+}
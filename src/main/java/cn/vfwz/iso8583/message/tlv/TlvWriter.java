@@ -0,0 +1,186 @@
+package cn.vfwz.iso8583.message.tlv;
+
+import cn.vfwz.iso8583.exception.Iso8583Exception;
+import cn.vfwz.iso8583.message.Message;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * <p>直接以字节组装TLV数据，标签以int表示，如0x9F26、0x95</p>
+ * <p>长度部分按值的字节数直接计算：127以内1字节，否则为0x81/0x82/0x83加1～3字节长度</p>
+ * <p>结构标签（如发卡行脚本71/72）通过{@link #encodedLength(int, int)}先算出子标签的总长度，再用{@link #putHeader(int, int)}写入</p>
+ * <p>通过reset()清空后反复使用；非线程安全</p>
+ */
+public class TlvWriter {
+
+    /**
+     * 长度部分除首字节外最多的字节数，与TlvReader一致
+     */
+    private static final int MAX_LENGTH_BYTES = 3;
+
+    private byte[] buffer;
+    private int position;
+
+    public TlvWriter() {
+        this(256);
+    }
+
+    /**
+     * @param capacity 初始容量，不足时自动扩容
+     */
+    public TlvWriter(int capacity) {
+        this.buffer = new byte[Math.max(capacity, 16)];
+    }
+
+    public TlvWriter reset() {
+        position = 0;
+        return this;
+    }
+
+    public TlvWriter put(int tag, byte[] value) {
+        return put(tag, value, 0, value.length);
+    }
+
+    public TlvWriter put(int tag, byte[] value, int offset, int length) {
+        putHeader(tag, length);
+        System.arraycopy(value, offset, buffer, position, length);
+        position += length;
+        return this;
+    }
+
+    /**
+     * 写入缓冲区中position到limit之间的数据作为值，不改变value的position
+     */
+    public TlvWriter put(int tag, ByteBuffer value) {
+        int length = value.remaining();
+        putHeader(tag, length);
+        value.duplicate().get(buffer, position, length);
+        position += length;
+        return this;
+    }
+
+    /**
+     * 只写入标签和长度部分，之后写入的valueLength个字节作为该标签的值，用于结构标签
+     *
+     * @param tag         标签
+     * @param valueLength 值的字节数
+     */
+    public TlvWriter putHeader(int tag, int valueLength) {
+        ensureCapacity(tagByteCount(tag) + lengthByteCount(valueLength) + valueLength);
+        position = writeTag(tag, buffer, position);
+        position = writeLength(valueLength, buffer, position);
+        return this;
+    }
+
+    /**
+     * 已写入的字节数
+     */
+    public int length() {
+        return position;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+
+    /**
+     * 将已写入的数据复制到dst
+     *
+     * @return 复制的字节数
+     */
+    public int writeTo(byte[] dst, int offset) {
+        System.arraycopy(buffer, 0, dst, offset, position);
+        return position;
+    }
+
+    /**
+     * 将已写入的数据写入缓冲区当前position
+     *
+     * @return 写入的字节数
+     */
+    public int writeTo(ByteBuffer dst) {
+        dst.put(buffer, 0, position);
+        return position;
+    }
+
+    /**
+     * 将已写入的数据作为报文中指定域的值
+     *
+     * @param message 报文
+     * @param index   域索引，如55域
+     */
+    public void writeTo(Message message, int index) {
+        message.updateValue(index, buffer, 0, position);
+    }
+
+    /**
+     * 一个TLV对象编码后的字节数
+     *
+     * @param tag         标签
+     * @param valueLength 值的字节数
+     */
+    public static int encodedLength(int tag, int valueLength) {
+        return tagByteCount(tag) + lengthByteCount(valueLength) + valueLength;
+    }
+
+    /**
+     * 标签的字节数，如0x95为1，0x9F26为2
+     */
+    public static int tagByteCount(int tag) {
+        return Math.max(1, (39 - Integer.numberOfLeadingZeros(tag)) / 8);
+    }
+
+    /**
+     * 长度部分的字节数
+     */
+    public static int lengthByteCount(int valueLength) {
+        if (valueLength < 0) {
+            throw new Iso8583Exception("TLV中数据长度不正确:" + valueLength);
+        }
+        if (valueLength < 0x80) {
+            return 1;
+        }
+        int lengthBytes = (39 - Integer.numberOfLeadingZeros(valueLength)) / 8;
+        if (lengthBytes > MAX_LENGTH_BYTES) {
+            throw new Iso8583Exception("TLV中数据长度超限:" + valueLength);
+        }
+        return 1 + lengthBytes;
+    }
+
+    /**
+     * 写入标签
+     *
+     * @return 写入后的位置
+     */
+    public static int writeTag(int tag, byte[] dst, int offset) {
+        for (int i = tagByteCount(tag) - 1; i >= 0; i--) {
+            dst[offset++] = (byte) (tag >>> (i * 8));
+        }
+        return offset;
+    }
+
+    /**
+     * 写入长度部分
+     *
+     * @return 写入后的位置
+     */
+    public static int writeLength(int valueLength, byte[] dst, int offset) {
+        int lengthBytes = lengthByteCount(valueLength) - 1;
+        if (lengthBytes == 0) {
+            dst[offset++] = (byte) valueLength;
+            return offset;
+        }
+        dst[offset++] = (byte) (0x80 | lengthBytes);
+        for (int i = lengthBytes - 1; i >= 0; i--) {
+            dst[offset++] = (byte) (valueLength >>> (i * 8));
+        }
+        return offset;
+    }
+
+    private void ensureCapacity(int length) {
+        if (position + length > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+        }
+    }
+}
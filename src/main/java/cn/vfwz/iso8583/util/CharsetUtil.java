@@ -0,0 +1,223 @@
+package cn.vfwz.iso8583.util;
+
+import cn.vfwz.iso8583.exception.Iso8583Exception;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>字符类型域的编解码工具</p>
+ * <p>纯7位ASCII的数据直接按字节生成字符串，不经过字符集；
+ * 其余数据使用线程内缓存的CharsetDecoder/CharsetEncoder，结果与String的构造方法及getBytes()一致</p>
+ */
+public class CharsetUtil {
+
+    /**
+     * 字符类型域默认使用的字符集
+     */
+    public static final Charset GBK = Charset.forName("GBK");
+
+    /**
+     * 各字符集是否兼容ASCII，即0x00~0x7F单字节编码且与ASCII一致
+     */
+    private static final Map<Charset, Boolean> ASCII_COMPATIBLE = new ConcurrentHashMap<>();
+
+    private static final ThreadLocal<Coders> CODERS = ThreadLocal.withInitial(Coders::new);
+
+    /**
+     * 将字节数组中的一段按字符集解码
+     *
+     * @param src     源数组
+     * @param offset  起始位置
+     * @param length  字节数
+     * @param charset 字符集
+     * @return 解码后的字符串
+     */
+    public static String decode(byte[] src, int offset, int length, Charset charset) {
+        if (isAscii(src, offset, length) && isAsciiCompatible(charset)) {
+            return new String(src, offset, length, StandardCharsets.ISO_8859_1);
+        }
+        return CODERS.get().decode(ByteBuffer.wrap(src, offset, length), charset);
+    }
+
+    public static String decode(byte[] src, Charset charset) {
+        return decode(src, 0, src.length, charset);
+    }
+
+    /**
+     * 将缓冲区中的一段按字符集解码，不改变buffer的position
+     *
+     * @param src     报文缓冲区，支持堆内及直接内存
+     * @param offset  起始位置
+     * @param length  字节数
+     * @param charset 字符集
+     * @return 解码后的字符串
+     */
+    public static String decode(ByteBuffer src, int offset, int length, Charset charset) {
+        if (src.hasArray()) {
+            return decode(src.array(), src.arrayOffset() + offset, length, charset);
+        }
+        if (isAscii(src, offset, length) && isAsciiCompatible(charset)) {
+            char[] chars = new char[length];
+            for (int i = 0; i < length; i++) {
+                chars[i] = (char) src.get(offset + i);
+            }
+            return new String(chars);
+        }
+        ByteBuffer region = src.duplicate();
+        ((Buffer) region).limit(offset + length);
+        ((Buffer) region).position(offset);
+        return CODERS.get().decode(region, charset);
+    }
+
+    /**
+     * 按字符集编码字符串，与String.getBytes(charset)一致
+     */
+    public static byte[] encode(String value, Charset charset) {
+        if (isAscii(value) && isAsciiCompatible(charset)) {
+            return value.getBytes(StandardCharsets.ISO_8859_1);
+        }
+        return CODERS.get().encode(value, charset);
+    }
+
+    /**
+     * 字符串按字符集编码后的字节数，纯ASCII时不产生中间对象
+     */
+    public static int encodedLength(String value, Charset charset) {
+        if (isAscii(value) && isAsciiCompatible(charset)) {
+            return value.length();
+        }
+        return CODERS.get().encode(value, charset).length;
+    }
+
+    /**
+     * 判断字节数组中的一段是否都是7位ASCII
+     */
+    public static boolean isAscii(byte[] src, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            if (src[i] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 判断缓冲区中的一段是否都是7位ASCII，不改变buffer的position
+     */
+    public static boolean isAscii(ByteBuffer src, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            if (src.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static boolean isAscii(CharSequence value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 判断字符集是否兼容ASCII，结果按字符集缓存
+     */
+    public static boolean isAsciiCompatible(Charset charset) {
+        if (charset == GBK || charset == StandardCharsets.UTF_8
+                || charset == StandardCharsets.US_ASCII || charset == StandardCharsets.ISO_8859_1) {
+            return true;
+        }
+        return ASCII_COMPATIBLE.computeIfAbsent(charset, CharsetUtil::checkAsciiCompatible);
+    }
+
+    private static boolean checkAsciiCompatible(Charset charset) {
+        if (!charset.canEncode()) {
+            return false;
+        }
+        byte[] ascii = new byte[0x80];
+        for (int i = 0; i < ascii.length; i++) {
+            ascii[i] = (byte) i;
+        }
+        String decoded = new String(ascii, charset);
+        if (decoded.length() != ascii.length) {
+            return false;
+        }
+        for (int i = 0; i < ascii.length; i++) {
+            if (decoded.charAt(i) != i) {
+                return false;
+            }
+        }
+        return Arrays.equals(ascii, decoded.getBytes(charset));
+    }
+
+    /**
+     * 线程内缓存的编解码器及输出缓冲区，非ASCII数据使用
+     */
+    private static class Coders {
+
+        private final Map<Charset, CharsetDecoder> decoders = new HashMap<>();
+        private final Map<Charset, CharsetEncoder> encoders = new HashMap<>();
+        private CharBuffer chars = CharBuffer.allocate(256);
+        private ByteBuffer bytes = ByteBuffer.allocate(256);
+
+        String decode(ByteBuffer in, Charset charset) {
+            CharsetDecoder decoder = decoders.computeIfAbsent(charset, c -> c.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE));
+            int capacity = (int) Math.ceil(in.remaining() * (double) decoder.maxCharsPerByte());
+            if (chars.capacity() < capacity) {
+                chars = CharBuffer.allocate(capacity);
+            }
+            ((Buffer) chars).clear();
+            decoder.reset();
+            check(decoder.decode(in, chars, true));
+            check(decoder.flush(chars));
+            ((Buffer) chars).flip();
+            return chars.toString();
+        }
+
+        byte[] encode(String value, Charset charset) {
+            CharsetEncoder encoder = encoders.computeIfAbsent(charset, c -> c.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE));
+            int capacity = (int) Math.ceil(value.length() * (double) encoder.maxBytesPerChar());
+            if (bytes.capacity() < capacity) {
+                bytes = ByteBuffer.allocate(capacity);
+            }
+            ((Buffer) bytes).clear();
+            encoder.reset();
+            CharBuffer in = CharBuffer.wrap(value);
+            check(encoder.encode(in, bytes, true));
+            check(encoder.flush(bytes));
+            byte[] result = new byte[bytes.position()];
+            System.arraycopy(bytes.array(), 0, result, 0, result.length);
+            return result;
+        }
+
+        private void check(CoderResult result) {
+            if (result.isError() || result.isOverflow()) {
+                try {
+                    result.throwException();
+                } catch (CharacterCodingException e) {
+                    throw new Iso8583Exception(e);
+                }
+            }
+        }
+    }
+}
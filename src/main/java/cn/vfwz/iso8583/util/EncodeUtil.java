@@ -1,5 +1,8 @@
 package cn.vfwz.iso8583.util;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 /**
  * <p>编码转换工具类.如:BCD和HEX</p>
  *
@@ -13,65 +16,105 @@ public class EncodeUtil {
     protected static final char[] BINARY = new char[]{'0', '1'};
 
 
+    /**
+     * 字节到两位hex字符的对照表，第b个字节对应下标2b和2b+1
+     */
+    private static final char[] BYTE_HEX = new char[256 * 2];
+
+    /**
+     * ASCII字符到4位数值的对照表，非hex字符为-1
+     */
+    private static final byte[] HEX_NIBBLE = new byte[128];
+
+    static {
+        for (int b = 0; b < 256; b++) {
+            BYTE_HEX[b * 2] = HEX[b >>> 4];
+            BYTE_HEX[b * 2 + 1] = HEX[b & 0x0F];
+        }
+        Arrays.fill(HEX_NIBBLE, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            HEX_NIBBLE['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            HEX_NIBBLE['A' + i] = (byte) (10 + i);
+            HEX_NIBBLE['a' + i] = (byte) (10 + i);
+        }
+    }
+
     //传入参数为只有01的字符串
     public static byte[] binary(String binaryStr) {
         //长度不是8倍数的话，无法知道在左边或右边补零，会引起歧义，导致结果不正确
         if (binaryStr.length() % 8 != 0) {
             throw new IllegalArgumentException("传入的参数长度必须是8的倍数");
         }
-        StringBuilder accum = new StringBuilder();
-        for (int i = 0; i < binaryStr.length(); i += 4) {
-            String temp = binaryStr.substring(i, i + 4);
+        byte[] result = new byte[binaryStr.length() / 8];
+        for (int i = 0, pointer = 0; i < result.length; i++) {
             int value = 0;
-            for (int j = 0; j < 4; j++) {
-                if (temp.charAt(j) == '1') {
-                    value += Math.pow(2, 3 - j);//计算值
-                }
+            for (int bit = 0; bit < 8; bit++, pointer++) {
+                // 非'1'的字符均按0处理
+                value = (value << 1) | (binaryStr.charAt(pointer) == '1' ? 1 : 0);
             }
-            accum.append(HEX[value]);
+            result[i] = (byte) value;
         }
-        return hex2Bytes(accum.toString());
+        return result;
     }
 
     /**
      * 将byte数组转化为String类型的十六进制编码格式
-     * 本方法实现的思路是：
-     * 1）每位byte数组转换为2位的十六进制数
-     * 2）将字节左移4位取得高四位字节数值，获取对应的char类型数组编码
-     * 3）将字节与0x0F按位与，从而获取第四位的字节，同样获取编码
+     * 每个字节直接查表获得对应的两位hex字符
      */
     public static String bytes2Hex(byte[] bParam) {
-        StringBuilder accum = new StringBuilder();
-        for (byte bt : bParam) {
-            accum.append(HEX[bt >> 4 & 0x0F]);//&0x0F的目的是为了转换负数
-            accum.append(HEX[bt & 0x0F]);
-        }
-        return accum.toString();
+        return bytes2Hex(bParam, 0, bParam.length);
     }
 
-    public static String binary(byte[] bts) {
-        StringBuilder accum = new StringBuilder();
-        for (byte bt : bts) {
-            accum.append(binary(bt));
+    /**
+     * 将字节数组中的一段转化为十六进制字符串
+     *
+     * @param src    源数组
+     * @param offset 起始位置
+     * @param length 字节数
+     * @return 大写hex字符串
+     */
+    public static String bytes2Hex(byte[] src, int offset, int length) {
+        char[] chars = new char[length * 2];
+        bytes2Hex(src, offset, length, chars, 0);
+        return new String(chars);
+    }
+
+    /**
+     * 将字节数组中的一段以hex字符写入字符数组，不产生中间对象
+     *
+     * @param src       源数组
+     * @param offset    起始位置
+     * @param length    字节数
+     * @param dst       目标字符数组
+     * @param dstOffset 写入起始位置
+     * @return 写入的字符数
+     */
+    public static int bytes2Hex(byte[] src, int offset, int length, char[] dst, int dstOffset) {
+        for (int i = 0; i < length; i++) {
+            int pair = (src[offset + i] & 0xFF) << 1;
+            dst[dstOffset++] = BYTE_HEX[pair];
+            dst[dstOffset++] = BYTE_HEX[pair + 1];
         }
-        return accum.toString();
+        return length * 2;
     }
 
-    //本方法修改于Integer.toBinaryString
-    //参数的每个字节都会转化为8位2进制字符串，如1会转换为00000001
-    private static String binary(byte bt) {
-        int num = bt & 0xFF;
-        char[] arrayOfChar = new char[8];
-        int i = 8;
-        for (int times = 0; times < 8; times++) {
-            arrayOfChar[(--i)] = BINARY[(num & 0x01)];
-            num >>>= 1;
+    public static String binary(byte[] bts) {
+        char[] chars = new char[bts.length * 8];
+        for (int i = 0, pointer = 0; i < bts.length; i++) {
+            int num = bts[i] & 0xFF;
+            // 每个字节都会转化为8位2进制字符，如1会转换为00000001
+            for (int bit = 7; bit >= 0; bit--) {
+                chars[pointer++] = BINARY[(num >>> bit) & 0x01];
+            }
         }
-        return new String(arrayOfChar);
+        return new String(chars);
     }
 
     /**
      * <p>8421 BCD编码支持</p>
+     * <p>忽略首尾空格，奇数长度时左补0</p>
      *
      * @param data 需要做编码的数据
      * @return byte[] 编码结果
@@ -82,27 +125,99 @@ public class EncodeUtil {
      */
     public static byte[] hex2Bytes(String data) {
         //空值校验
-        if (null == data || "".equals(data.trim())) {
+        if (null == data) {
             return new byte[0];
         }
-        //去首位空格
-        data = data.trim();
-        //左位补0
-        data = data.length() % 2 == 0 ? data : "0" + data;
-        //结果数据
-        byte[] result = new byte[(data.length() + data.length() % 2) / 2];
-        //依次写入数据
-        for (int pointer = 0, index = 0; pointer < data.length(); pointer++, index++) {
-            //左边4bit
-            int left = Character.digit(data.charAt(pointer), 16);
-            //右边4bit
-            int right = Character.digit(data.charAt(++pointer), 16);
-            //获得结果
-            result[index] = (byte) ((left << 4) | right);
+        //去首尾空格，只记录位置，不生成子串
+        int start = 0;
+        int end = data.length();
+        while (start < end && data.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && data.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        int length = end - start;
+        //结果数据，奇数长度时左位补0
+        byte[] result = new byte[(length + 1) / 2];
+        int index = 0;
+        if (length % 2 != 0) {
+            result[index++] = (byte) nibble(data.charAt(start++));
         }
+        hex2Bytes(data, start, end - start, result, index);
         return result;
     }
 
+    /**
+     * 将偶数长度的hex字符直接写入字节数组，不产生中间对象
+     *
+     * @param hex    hex字符
+     * @param dst    目标数组
+     * @param offset 写入起始位置
+     * @return 写入的字节数
+     */
+    public static int hex2Bytes(CharSequence hex, byte[] dst, int offset) {
+        return hex2Bytes(hex, 0, hex.length(), dst, offset);
+    }
+
+    /**
+     * 将hex字符中偶数长度的一段直接写入字节数组，不产生中间对象
+     *
+     * @param hex       hex字符
+     * @param offset    起始位置
+     * @param length    字符数
+     * @param dst       目标数组
+     * @param dstOffset 写入起始位置
+     * @return 写入的字节数
+     */
+    public static int hex2Bytes(CharSequence hex, int offset, int length, byte[] dst, int dstOffset) {
+        int byteCount = length / 2;
+        for (int i = 0, pointer = offset; i < byteCount; i++, pointer += 2) {
+            dst[dstOffset + i] = (byte) ((nibble(hex.charAt(pointer)) << 4) | nibble(hex.charAt(pointer + 1)));
+        }
+        return byteCount;
+    }
+
+    /**
+     * 将字符数组中偶数长度的一段hex字符直接写入字节数组，不产生中间对象
+     *
+     * @param hex       hex字符数组
+     * @param offset    起始位置
+     * @param length    字符数
+     * @param dst       目标数组
+     * @param dstOffset 写入起始位置
+     * @return 写入的字节数
+     */
+    public static int hex2Bytes(char[] hex, int offset, int length, byte[] dst, int dstOffset) {
+        int byteCount = length / 2;
+        for (int i = 0, pointer = offset; i < byteCount; i++, pointer += 2) {
+            dst[dstOffset + i] = (byte) ((nibble(hex[pointer]) << 4) | nibble(hex[pointer + 1]));
+        }
+        return byteCount;
+    }
+
+    /**
+     * 将偶数长度的hex字符直接写入缓冲区当前位置，不产生中间对象
+     *
+     * @param hex hex字符
+     * @param dst 目标缓冲区
+     * @return 写入的字节数
+     */
+    public static int hex2Bytes(CharSequence hex, ByteBuffer dst) {
+        int byteCount = hex.length() / 2;
+        for (int pointer = 0; pointer < byteCount * 2; pointer += 2) {
+            dst.put((byte) ((nibble(hex.charAt(pointer)) << 4) | nibble(hex.charAt(pointer + 1))));
+        }
+        return byteCount;
+    }
+
+    /**
+     * 查表获取hex字符对应的4位数值，非hex字符返回-1
+     */
+    private static int nibble(char c) {
+        return c < 128 ? HEX_NIBBLE[c] : -1;
+    }
+
     public static int byte2Int(byte b) {
         return b & 0xFF;
     }
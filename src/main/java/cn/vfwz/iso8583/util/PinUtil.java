@@ -1,12 +1,20 @@
 package cn.vfwz.iso8583.util;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import cn.vfwz.iso8583.crypto.CryptoEngine;
+import cn.vfwz.iso8583.crypto.PinBlock;
+
+import java.util.Arrays;
+import java.util.List;
 
 public class PinUtil {
 
     private static final int PIN_BYTE_LENGTH = 8;
-    private static final String FILLED_IN = "FFFFFFFFFFFFFFFF";
+    private static final int MIN_PIN_LENGTH = 4;
+    private static final int MAX_PIN_LENGTH = 12;
+    /**
+     * 参与运算的主账号位数
+     */
+    private static final int PAN_DIGITS = 12;
 
     /**
      * ANSI X9.8 Format（带主账号信息）
@@ -35,19 +43,8 @@ public class PinUtil {
      * @date 2017年4月10日 下午1:27:38
      */
     public static final byte[] pinBlockByte(String pin, String cardNo) {
-        //获取卡号pan值
-        byte[] pan = panByte(cardNo);
-        //获取明文pinBlock
-        byte[] pinBlock = pinBlockByte(pin);
-        //长度匹配
-        if (pan.length != pinBlock.length) {
-            throw new IllegalArgumentException(String.format("计算pin长度与pan长度不等：pin.length = %d  pan.length = %d", pinBlock.length, pan.length));
-        }
-        byte[] result = new byte[pinBlock.length];
-        //异或计算
-        for (int i = 0; i < pan.length; i++) {
-            result[i] = (byte) (pan[i] ^ pinBlock[i]);
-        }
+        byte[] result = new byte[PIN_BYTE_LENGTH];
+        pinBlock(pin, cardNo, result, 0);
         return result;
     }
 
@@ -76,52 +73,199 @@ public class PinUtil {
      * @date 2017年4月10日 下午1:06:53
      */
     public static final byte[] pinBlockByte(String pin) {
-        // 填充pinBlock
-        StringBuilder sb = new StringBuilder(pin).append(FILLED_IN);
-        // 删除多余长度
-        sb.delete((PIN_BYTE_LENGTH - 1) * 2, sb.length());
-        // 创建byte[]
-        ByteArrayOutputStream baos = new ByteArrayOutputStream(8);
-        byte[] msgLength = EncodeUtil.hex2Bytes(String.valueOf(pin.length()));
-        byte[] content = EncodeUtil.hex2Bytes(sb.toString());
+        byte[] result = new byte[PIN_BYTE_LENGTH];
+        writePinField(pin, result, 0);
+        return result;
+    }
+
+    /**
+     * <p>生成ISO 9564格式0(ANSI X9.8)的明文PIN block，直接写入dst，不生成中间字符串</p>
+     * <p>PIN字段：0 + PIN长度 + PIN + F填充；PAN字段：0000 + 主账号去掉校验位的右12位；两者异或</p>
+     *
+     * @param pin    4到12位数字的明文PIN
+     * @param cardNo 卡号信息（2域，二磁道，三磁道）均可
+     * @param dst    目标数组
+     * @param offset 写入起始位置
+     * @return 写入的字节数
+     */
+    public static int pinBlock(CharSequence pin, CharSequence cardNo, byte[] dst, int offset) {
+        int panStart = panStart(cardNo);
+        writePinField(pin, dst, offset);
+        for (int i = 0; i < PAN_DIGITS / 2; i++) {
+            int high = digit(cardNo, panStart + i * 2);
+            int low = digit(cardNo, panStart + i * 2 + 1);
+            dst[offset + 2 + i] ^= (byte) ((high << 4) | low);
+        }
+        return PIN_BYTE_LENGTH;
+    }
+
+    /**
+     * 从ISO 9564格式0的明文PIN block中取出明文PIN
+     *
+     * @param block  明文PIN block
+     * @param offset 开始位置
+     * @param cardNo 卡号信息（2域，二磁道，三磁道）均可
+     * @return 明文PIN
+     * @throws IllegalArgumentException 不是有效的格式0 PIN block
+     */
+    public static String extractPin(byte[] block, int offset, CharSequence cardNo) {
+        int panStart = panStart(cardNo);
+        byte[] clear = Arrays.copyOfRange(block, offset, offset + PIN_BYTE_LENGTH);
+        char[] digits = null;
+        try {
+            for (int i = 0; i < PAN_DIGITS / 2; i++) {
+                clear[2 + i] ^= (byte) ((digit(cardNo, panStart + i * 2) << 4) | digit(cardNo, panStart + i * 2 + 1));
+            }
+            int length = clear[0] & 0x0F;
+            if ((clear[0] & 0xF0) != 0 || length < MIN_PIN_LENGTH || length > MAX_PIN_LENGTH) {
+                throw new IllegalArgumentException("不是有效的ISO格式0 PIN block");
+            }
+            digits = new char[length];
+            for (int i = 0; i < (PIN_BYTE_LENGTH - 1) * 2; i++) {
+                int nibble = (clear[1 + i / 2] >> (i % 2 == 0 ? 4 : 0)) & 0x0F;
+                if (i < length ? nibble > 9 : nibble != 0x0F) {
+                    throw new IllegalArgumentException("不是有效的ISO格式0 PIN block");
+                }
+                if (i < length) {
+                    digits[i] = (char) ('0' + nibble);
+                }
+            }
+            return new String(digits);
+        } finally {
+            Arrays.fill(clear, (byte) 0);
+            if (digits != null) {
+                Arrays.fill(digits, '0');
+            }
+        }
+    }
+
+    /**
+     * 生成格式0的PIN block并加密
+     *
+     * @param pin    明文PIN
+     * @param cardNo 卡号信息
+     * @param key    PIN密钥，8/16/24字节
+     * @return 加密后的PIN block
+     */
+    public static PinBlock encryptPin(CharSequence pin, CharSequence cardNo, byte[] key) {
+        byte[] block = new byte[PIN_BYTE_LENGTH];
+        pinBlock(pin, cardNo, block, 0);
+        MacUtil.getCryptoEngine().encrypt(key, block, 0, PIN_BYTE_LENGTH, block, 0);
+        return new PinBlock(block);
+    }
+
+    /**
+     * 解密PIN block并取出明文PIN
+     *
+     * @param pinBlock 加密后的PIN block
+     * @param cardNo   卡号信息
+     * @param key      PIN密钥，8/16/24字节
+     * @return 明文PIN
+     */
+    public static String decryptPin(PinBlock pinBlock, CharSequence cardNo, byte[] key) {
+        byte[] block = new byte[PIN_BYTE_LENGTH];
+        try {
+            pinBlock.copyTo(block, 0);
+            MacUtil.getCryptoEngine().decrypt(key, block, 0, PIN_BYTE_LENGTH, block, 0);
+            return extractPin(block, 0, cardNo);
+        } finally {
+            Arrays.fill(block, (byte) 0);
+        }
+    }
+
+    /**
+     * <p>PIN转加密：以fromKey解密后以toKey加密，格式不变，不需要卡号</p>
+     * <p>一批PIN block合并为一次解密和一次加密，结果原地写回各PinBlock</p>
+     *
+     * @param pinBlocks 加密后的PIN block，如终端PIK加密的52域
+     * @param fromKey   原PIN密钥，如终端PIK
+     * @param toKey     目标PIN密钥，如主机ZPK
+     */
+    public static void translate(List<PinBlock> pinBlocks, byte[] fromKey, byte[] toKey) {
+        int length = pinBlocks.size() * PIN_BYTE_LENGTH;
+        if (length == 0) {
+            return;
+        }
+        byte[] buffer = new byte[length];
+        try {
+            for (int i = 0; i < pinBlocks.size(); i++) {
+                pinBlocks.get(i).copyTo(buffer, i * PIN_BYTE_LENGTH);
+            }
+            CryptoEngine engine = MacUtil.getCryptoEngine();
+            engine.decrypt(fromKey, buffer, 0, length, buffer, 0);
+            engine.encrypt(toKey, buffer, 0, length, buffer, 0);
+            for (int i = 0; i < pinBlocks.size(); i++) {
+                pinBlocks.get(i).set(buffer, i * PIN_BYTE_LENGTH);
+            }
+        } finally {
+            Arrays.fill(buffer, (byte) 0);
+        }
+    }
+
+    /**
+     * 单个PIN block转加密，结果原地写回
+     */
+    public static void translate(PinBlock pinBlock, byte[] fromKey, byte[] toKey) {
+        byte[] buffer = new byte[PIN_BYTE_LENGTH];
         try {
-            baos.write(msgLength);
-            baos.write(content);
-        } catch (IOException e) {
-            e.printStackTrace();
+            pinBlock.copyTo(buffer, 0);
+            CryptoEngine engine = MacUtil.getCryptoEngine();
+            engine.decrypt(fromKey, buffer, 0, PIN_BYTE_LENGTH, buffer, 0);
+            engine.encrypt(toKey, buffer, 0, PIN_BYTE_LENGTH, buffer, 0);
+            pinBlock.set(buffer, 0);
+        } finally {
+            Arrays.fill(buffer, (byte) 0);
         }
-        return baos.toByteArray();
     }
 
-    private static final byte[] panByte(String cardNo) {
-        return EncodeUtil.hex2Bytes(panStr(cardNo));
+    /**
+     * PIN字段：0 + PIN长度 + PIN + F填充
+     */
+    private static void writePinField(CharSequence pin, byte[] dst, int offset) {
+        int length = pin.length();
+        if (length < MIN_PIN_LENGTH || length > MAX_PIN_LENGTH) {
+            throw new IllegalArgumentException("PIN长度[" + length + "]错误，需要" + MIN_PIN_LENGTH + "到" + MAX_PIN_LENGTH + "位");
+        }
+        dst[offset] = (byte) length;
+        for (int i = 0; i < (PIN_BYTE_LENGTH - 1) * 2; i += 2) {
+            int high = i < length ? digit(pin, i) : 0x0F;
+            int low = i + 1 < length ? digit(pin, i + 1) : 0x0F;
+            dst[offset + 1 + i / 2] = (byte) ((high << 4) | low);
+        }
     }
 
     /**
-     * 取主账号的pan值
+     * 取主账号的pan值在卡号信息中的开始位置
      * （2域，二磁道，三磁道）均可
      * 如果传2域值，则从右起第二位向左数12位；
      * 如果传二磁道信息，从磁道2（35域）分隔符'＝'左边第二位开始，向左取12个字符，作为参与PIN加、密的PAN
      * 如只有磁道3（36域），则从磁道3分隔符'＝'左边第二位开始，向左取12个字符，作为参与PIN加、解密的PAN
      *
      * @param cardNo 卡号信息（2域，二磁道，三磁道）均可
-     * @return String pan的字符串表示形式
-     * @Title: panStr
-     * @Description: 取主账号的pan值
-     * @author Ajsgn@foxmail.com
-     * @date 2017年4月10日 下午1:08:49
+     * @return 12位PAN在cardNo中的开始位置
      */
-    private static final String panStr(String cardNo) {
+    private static int panStart(CharSequence cardNo) {
         checkCardNo(cardNo);
-        String pan = "";
-        if (cardNo.contains("=")) {
-            int index = cardNo.indexOf("=");
-            pan = cardNo.substring(index - 12 - 1, index - 1);
-        } else {
-            int length = cardNo.length();
-            pan = cardNo.substring(length - 12 - 1, length - 1);
+        int end = cardNo.length();
+        for (int i = 0; i < cardNo.length(); i++) {
+            if (cardNo.charAt(i) == '=') {
+                end = i;
+                break;
+            }
+        }
+        int start = end - PAN_DIGITS - 1;
+        if (start < 0) {
+            throw new IllegalArgumentException("无效的卡号信息...");
+        }
+        return start;
+    }
+
+    private static int digit(CharSequence chars, int index) {
+        char c = chars.charAt(index);
+        if (c < '0' || c > '9') {
+            throw new IllegalArgumentException("第" + (index + 1) + "位不是数字");
         }
-        return String.format("0000%s", pan);
+        return c - '0';
     }
 
     /**
@@ -134,8 +278,8 @@ public class PinUtil {
      * @author Ajsgn@foxmail.com
      * @date 2017年4月10日 下午1:12:47
      */
-    private static void checkCardNo(String cardNo) {
-        if (StringUtil.isBlank(cardNo) || cardNo.length() < 16) {
+    private static void checkCardNo(CharSequence cardNo) {
+        if (cardNo == null || StringUtil.isBlank(cardNo.toString()) || cardNo.length() < 16) {
             throw new IllegalArgumentException("无效的卡号信息...");
         }
     }
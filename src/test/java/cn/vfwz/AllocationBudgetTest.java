@@ -0,0 +1,177 @@
+package cn.vfwz;
+
+import cn.vfwz.iso8583.message.Message;
+import cn.vfwz.iso8583.message.MessageConfig;
+import cn.vfwz.iso8583.message.MessageDecoder;
+import cn.vfwz.iso8583.message.MessageEncoder;
+import cn.vfwz.iso8583.message.MessagePool;
+import cn.vfwz.iso8583.message.field.Field;
+import cn.vfwz.iso8583.message.tlv.EmvData;
+import cn.vfwz.iso8583.message.tlv.TLV;
+import cn.vfwz.iso8583.message.tlv.TlvReader;
+import cn.vfwz.iso8583.util.EncodeUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+
+import static cn.vfwz.iso8583.constant.FieldIndex.BITMAP;
+import static cn.vfwz.iso8583.constant.FieldIndex.TOTAL_MESSAGE_LENGTH;
+
+/**
+ * <p>编解码主要路径每次操作的分配字节数，超过allocation-budgets.properties中的预算时失败</p>
+ * <p>使用线程分配计数器，预热后取多次操作的平均值；JVM不支持或JDK版本与测量预算的版本不同时跳过</p>
+ */
+@Slf4j
+public class AllocationBudgetTest {
+
+    private static final int WARMUP = 20000;
+    /**
+     * 测量次数足够多，单次TLAB分配等偶发开销平摊后不影响结果
+     */
+    private static final int ITERATIONS = 50000;
+
+    private static final String[][] CORPUS = {
+            {"SIGNIN", PosMessageTest.SIGNIN_REQUEST},
+            {"PAY", PosMessageTest.PAY_REQUEST},
+            {"SIGN_IMG", PosMessageTest.SIGN_IMG_REQUEST},
+    };
+
+    private static com.sun.management.ThreadMXBean threadMXBean;
+    private static Properties budgets;
+
+    /**
+     * 防止被测操作被JIT消除
+     */
+    private static int sink;
+
+    private interface Operation {
+        int run();
+    }
+
+    @BeforeClass
+    public static void init() throws Exception {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threadMXBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+        budgets = new Properties();
+        try (InputStream in = AllocationBudgetTest.class.getResourceAsStream("/allocation-budgets.properties")) {
+            Assert.assertNotNull("缺少allocation-budgets.properties", in);
+            budgets.load(in);
+        }
+        // 不同JDK版本的分配差异较大(如JDK 8的字符串为char[])，只在测量预算的版本上检查
+        String measuredOn = budgets.getProperty("java.specification.version");
+        Assume.assumeTrue("分配预算在JDK " + measuredOn + "上测得，当前JDK " + System.getProperty("java.specification.version"),
+                System.getProperty("java.specification.version").equals(measuredOn));
+    }
+
+    /**
+     * 测量每次操作的平均分配字节数
+     */
+    private static long bytesPerOperation(Operation operation) {
+        for (int i = 0; i < WARMUP; i++) {
+            sink += operation.run();
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += operation.run();
+        }
+        long after = threadMXBean.getThreadAllocatedBytes(threadId);
+        return (after - before) / ITERATIONS;
+    }
+
+    private static void checkBudget(String key, Operation operation) {
+        String budget = budgets.getProperty(key);
+        Assert.assertNotNull("allocation-budgets.properties中缺少[" + key + "]", budget);
+        long measured = bytesPerOperation(operation);
+        log.info("[{}] {} B/op, 预算 {} B/op", key, measured, budget);
+        Assert.assertTrue("[" + key + "] 每次操作分配" + measured + "字节，超过预算" + budget + "字节",
+                measured <= Long.parseLong(budget.trim()));
+    }
+
+    @Test
+    public void decode() {
+        MessageConfig config = MessageFixtures.frozenPosConfig();
+        MessageDecoder decoder = new MessageDecoder(config);
+        Message message = new MessagePool(config, 1).acquire();
+        for (String[] sample : CORPUS) {
+            ByteBuffer frame = ByteBuffer.wrap(decoder.decode(sample[1]).getBytes());
+            // 解析到复用的报文后访问所有域
+            checkBudget("decode." + sample[0], () -> {
+                ((Buffer) frame).rewind();
+                Iterator<Field> iterator = decoder.decode(frame, true, message).getFieldIterator();
+                int length = 0;
+                while (iterator.hasNext()) {
+                    length += iterator.next().getLength();
+                }
+                return length;
+            });
+        }
+    }
+
+    @Test
+    public void encode() {
+        MessageConfig config = MessageFixtures.frozenPosConfig();
+        MessageDecoder decoder = new MessageDecoder(config);
+        MessageEncoder encoder = new MessageEncoder(config);
+        Message message = new MessagePool(config, 1).acquire();
+        for (String[] sample : CORPUS) {
+            List<Field> fields = new ArrayList<>();
+            Iterator<Field> iterator = decoder.decode(sample[1]).getFieldIterator();
+            while (iterator.hasNext()) {
+                Field field = iterator.next();
+                if (field.getIndex() != TOTAL_MESSAGE_LENGTH && field.getIndex() != BITMAP) {
+                    fields.add(field);
+                }
+            }
+            checkBudget("encode." + sample[0], () -> {
+                encoder.reset();
+                for (Field field : fields) {
+                    encoder.setField(field.getIndex(), field.getValue());
+                }
+                return encoder.encode(message).getByteLength();
+            });
+        }
+    }
+
+    @Test
+    public void getBytes() {
+        MessageDecoder decoder = new MessageDecoder(MessageFixtures.frozenPosConfig());
+        for (String[] sample : CORPUS) {
+            Message message = decoder.decode(sample[1]);
+            checkBudget("getBytes." + sample[0], () -> message.getBytes().length);
+        }
+    }
+
+    @Test
+    public void tlvParse() {
+        checkBudget("tlv.parse", () -> TLV.parse(TLVTest.TLV_MESSAGE).size());
+    }
+
+    @Test
+    public void tlvReader() {
+        byte[] data = EncodeUtil.hex2Bytes(TLVTest.TLV_MESSAGE);
+        TlvReader reader = new TlvReader();
+        checkBudget("tlv.reader", () -> reader.wrap(data).getValueOffset(0x9F26) + reader.getValueLength(0x9F36));
+    }
+
+    @Test
+    public void emvData() {
+        byte[] data = EncodeUtil.hex2Bytes(TLVTest.TLV_MESSAGE);
+        EmvData emv = new EmvData();
+        checkBudget("emv.wrap", () -> emv.wrap(data).getAtc() + (int) emv.getAmountAuthorised());
+    }
+}
@@ -0,0 +1,51 @@
+package cn.vfwz;
+
+import cn.vfwz.iso8583.util.CharsetUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+public class CharsetUtilTest {
+
+    private static final String[] SAMPLES = {"", "00", "123456789012", "A1B2 C3~", "中国银联", "商户ABC测试", "été", "😀"};
+
+    @Test
+    public void sameAsString() {
+        Charset[] charsets = {CharsetUtil.GBK, StandardCharsets.UTF_8, StandardCharsets.UTF_16BE, StandardCharsets.ISO_8859_1};
+        for (Charset charset : charsets) {
+            for (String sample : SAMPLES) {
+                byte[] expected = sample.getBytes(charset);
+                Assert.assertArrayEquals(expected, CharsetUtil.encode(sample, charset));
+                Assert.assertEquals(expected.length, CharsetUtil.encodedLength(sample, charset));
+
+                byte[] framed = new byte[expected.length + 4];
+                System.arraycopy(expected, 0, framed, 2, expected.length);
+                String decoded = new String(expected, charset);
+                Assert.assertEquals(decoded, CharsetUtil.decode(framed, 2, expected.length, charset));
+                Assert.assertEquals(decoded, CharsetUtil.decode(ByteBuffer.wrap(framed), 2, expected.length, charset));
+
+                ByteBuffer direct = ByteBuffer.allocateDirect(framed.length);
+                direct.put(framed).flip();
+                Assert.assertEquals(decoded, CharsetUtil.decode(direct, 2, expected.length, charset));
+                Assert.assertEquals(0, direct.position());
+            }
+        }
+    }
+
+    @Test
+    public void malformedInput() {
+        // 不完整的GBK双字节字符按替换字符处理，与String构造方法一致
+        byte[] malformed = {0x41, (byte) 0xD6};
+        Assert.assertEquals(new String(malformed, CharsetUtil.GBK), CharsetUtil.decode(malformed, CharsetUtil.GBK));
+    }
+
+    @Test
+    public void asciiCompatible() {
+        Assert.assertTrue(CharsetUtil.isAsciiCompatible(CharsetUtil.GBK));
+        Assert.assertTrue(CharsetUtil.isAsciiCompatible(Charset.forName("GB18030")));
+        Assert.assertFalse(CharsetUtil.isAsciiCompatible(StandardCharsets.UTF_16BE));
+    }
+}
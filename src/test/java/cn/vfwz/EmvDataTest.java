@@ -0,0 +1,102 @@
+package cn.vfwz;
+
+import cn.vfwz.iso8583.exception.Iso8583Exception;
+import cn.vfwz.iso8583.message.Message;
+import cn.vfwz.iso8583.message.MessageConfig;
+import cn.vfwz.iso8583.message.MessageDecoder;
+import cn.vfwz.iso8583.message.MessageView;
+import cn.vfwz.iso8583.message.tlv.EmvData;
+import cn.vfwz.iso8583.message.tlv.EmvTag;
+import cn.vfwz.iso8583.message.tlv.TlvWriter;
+import cn.vfwz.iso8583.util.EncodeUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static cn.vfwz.iso8583.constant.FieldIndex.F55;
+
+public class EmvDataTest {
+
+    @Test
+    public void hotTags() {
+        EmvData emv = new EmvData().wrap(EncodeUtil.hex2Bytes(TLVTest.TLV_MESSAGE));
+        Assert.assertEquals("46FD62985CAAE758", EncodeUtil.bytes2Hex(emv.getArqc()));
+        Assert.assertEquals(0x80, emv.getCryptogramInformationData());
+        Assert.assertEquals("07011703A00000010A0100000500001EF41C46", EncodeUtil.bytes2Hex(emv.getIad()));
+        Assert.assertEquals(0x0C66, emv.getAtc());
+        Assert.assertEquals(0, emv.getTvr());
+        Assert.assertEquals(220824, emv.getTransactionDate());
+        Assert.assertEquals(0, emv.getTransactionType());
+        Assert.assertEquals(1111, emv.getAmountAuthorised());
+        Assert.assertEquals(0, emv.getAmountOther());
+        Assert.assertEquals(156, emv.getTransactionCurrencyCode());
+        Assert.assertEquals(156, emv.getTerminalCountryCode());
+        Assert.assertEquals(0x9536C9B8L, emv.getUnpredictableNumber());
+
+        // 字典中的格式
+        Assert.assertEquals("12345678", emv.getString(EmvTag.INTERFACE_DEVICE_SERIAL_NUMBER.getTag()));
+        Assert.assertEquals("00000001", emv.getString(0x9F41));
+        Assert.assertEquals("A000000333010102", emv.getString(0x84));
+        Assert.assertNull(emv.getString(0x5A));
+        Assert.assertSame(EmvTag.AMOUNT_AUTHORISED, EmvTag.of(0x9F02));
+        Assert.assertNull(EmvTag.of(0x9F7C));
+
+        // 重新指向只有部分标签的数据
+        byte[] data = new TlvWriter()
+                .put(0x9F02, EncodeUtil.hex2Bytes("000000012345"))
+                .put(0x5A, EncodeUtil.hex2Bytes("6224242300000069FFFF"))
+                .toByteArray();
+        emv.wrap(data);
+        Assert.assertEquals(12345, emv.getAmountAuthorised());
+        Assert.assertEquals(EmvData.ABSENT, emv.getAtc());
+        Assert.assertEquals(EmvData.ABSENT, emv.getTvr());
+        Assert.assertNull(emv.getArqc());
+        Assert.assertEquals(EmvData.ABSENT, emv.getArqc(new byte[8], 0));
+        Assert.assertNull(emv.getIad());
+        Assert.assertEquals("6224242300000069", emv.getString(0x5A));
+    }
+
+    @Test
+    public void invalidHotTag() {
+        String[] invalid = {"9F260446FD6298", "9F02060000000011AA", "9F3603000C66"};
+        EmvData emv = new EmvData();
+        for (String hex : invalid) {
+            try {
+                emv.wrap(EncodeUtil.hex2Bytes(hex));
+                Assert.fail(hex);
+            } catch (Iso8583Exception e) {
+                // expected
+            }
+        }
+
+        // 9F02之前的标签正常，失败后不能残留上一次或本次的部分值
+        emv.wrap(EncodeUtil.hex2Bytes(TLVTest.TLV_MESSAGE));
+        try {
+            emv.wrap(EncodeUtil.hex2Bytes("9F2701809F3602001A9F02060000000011AA"));
+            Assert.fail();
+        } catch (Iso8583Exception e) {
+            // expected
+        }
+        Assert.assertNull(emv.getArqc());
+        Assert.assertEquals(EmvData.ABSENT, emv.getCryptogramInformationData());
+        Assert.assertEquals(EmvData.ABSENT, emv.getAtc());
+        Assert.assertEquals(EmvData.ABSENT, emv.getTransactionDate());
+        Assert.assertEquals(EmvData.ABSENT, emv.getAmountAuthorised());
+        Assert.assertEquals(EmvData.ABSENT, emv.getUnpredictableNumber());
+    }
+
+    @Test
+    public void wrapMessage() {
+        MessageConfig config = MessageFixtures.frozenPosConfig();
+        Message message = new MessageDecoder(config).decode(PosMessageTest.SIGNIN_REQUEST);
+        EmvData emv = new EmvData();
+        Assert.assertNull(emv.wrap(message));
+        Assert.assertNull(emv.wrap(new MessageView(config, true).wrap(message.getBytes())));
+
+        message.updateValue(F55, TLVTest.TLV_MESSAGE);
+        Assert.assertEquals(1111, emv.wrap(message).getAmountAuthorised());
+
+        MessageView view = new MessageView(config, true).wrap(message.getBytes());
+        Assert.assertEquals(0x0C66, emv.wrap(view).getAtc());
+        Assert.assertEquals("46FD62985CAAE758", EncodeUtil.bytes2Hex(emv.getArqc()));
+    }
+}
@@ -0,0 +1,64 @@
+package cn.vfwz;
+
+import cn.vfwz.iso8583.util.EncodeUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+public class EncodeUtilTest {
+
+    @Test
+    public void allBytesRoundTrip() {
+        byte[] bytes = new byte[256];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        String hex = EncodeUtil.bytes2Hex(bytes);
+        Assert.assertEquals(512, hex.length());
+        Assert.assertEquals("000102", hex.substring(0, 6));
+        Assert.assertEquals("7F80", hex.substring(254, 258));
+        Assert.assertEquals("FEFF", hex.substring(508));
+        Assert.assertArrayEquals(bytes, EncodeUtil.hex2Bytes(hex));
+        Assert.assertArrayEquals(bytes, EncodeUtil.hex2Bytes(hex.toLowerCase()));
+
+        char[] chars = new char[10];
+        Assert.assertEquals(4, EncodeUtil.bytes2Hex(bytes, 0xAB, 2, chars, 3));
+        Assert.assertEquals("ABAC", new String(chars, 3, 4));
+        Assert.assertEquals("7F80", EncodeUtil.bytes2Hex(bytes, 0x7F, 2));
+
+        byte[] dst = new byte[4];
+        Assert.assertEquals(2, EncodeUtil.hex2Bytes("xx1A2bxx".toCharArray(), 2, 4, dst, 1));
+        Assert.assertArrayEquals(new byte[]{0, 0x1A, 0x2B, 0}, dst);
+        Assert.assertEquals(1, EncodeUtil.hex2Bytes("xxF0", 2, 2, dst, 3));
+        Assert.assertEquals((byte) 0xF0, dst[3]);
+
+        ByteBuffer buffer = ByteBuffer.allocate(3);
+        Assert.assertEquals(3, EncodeUtil.hex2Bytes("00FF7f", buffer));
+        Assert.assertArrayEquals(new byte[]{0, (byte) 0xFF, 0x7F}, buffer.array());
+    }
+
+    @Test
+    public void hex2BytesTrimAndPad() {
+        Assert.assertArrayEquals(new byte[0], EncodeUtil.hex2Bytes((String) null));
+        Assert.assertArrayEquals(new byte[0], EncodeUtil.hex2Bytes(""));
+        Assert.assertArrayEquals(new byte[0], EncodeUtil.hex2Bytes("   "));
+        // 奇数长度左补0，忽略首尾空格
+        Assert.assertArrayEquals(new byte[]{0x0A, (byte) 0xBC}, EncodeUtil.hex2Bytes(" ABC "));
+        Assert.assertArrayEquals(new byte[]{0x01}, EncodeUtil.hex2Bytes("1"));
+    }
+
+    @Test
+    public void binary() {
+        String bits = "0110000000111100000000001000000100001010110100001000110000010001";
+        byte[] bytes = EncodeUtil.binary(bits);
+        Assert.assertEquals("603C00810AD08C11", EncodeUtil.bytes2Hex(bytes));
+        Assert.assertEquals(bits, EncodeUtil.binary(bytes));
+        Assert.assertEquals("10000000", EncodeUtil.binary(new byte[]{(byte) 0x80}));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void binaryLength() {
+        EncodeUtil.binary("0101");
+    }
+}
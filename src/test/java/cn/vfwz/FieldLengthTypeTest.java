@@ -0,0 +1,76 @@
+package cn.vfwz;
+
+import cn.vfwz.iso8583.enumeration.FieldLengthType;
+import cn.vfwz.iso8583.exception.Iso8583Exception;
+import cn.vfwz.iso8583.util.EncodeUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static cn.vfwz.iso8583.enumeration.FieldLengthType.*;
+
+public class FieldLengthTypeTest {
+
+    @Test
+    public void encodeAndDecode() {
+        Assert.assertEquals("", FIXED.encode(8));
+        Assert.assertEquals("08", LLVAR.encode(8));
+        Assert.assertEquals("0123", LLLVAR.encode(123));
+        Assert.assertEquals("009999", LLLLVAR.encode(9999));
+        Assert.assertEquals("3038", LLVAR_ASCII.encode(8));
+        Assert.assertEquals("303939", LLLVAR_ASCII.encode(99));
+
+        Assert.assertEquals(99, LLVAR.decode("99"));
+        Assert.assertEquals(123, LLLVAR.decode("0123"));
+        Assert.assertEquals(999999, LLLLVAR.decode("999999"));
+        Assert.assertEquals(8, LLVAR_ASCII.decode("3038"));
+        Assert.assertEquals(999, LLLVAR_ASCII.decode("393939"));
+    }
+
+    @Test
+    public void readAndWriteRegion() {
+        FieldLengthType[] types = {LLVAR, LLLVAR, LLLLVAR, LLVAR_ASCII, LLLVAR_ASCII};
+        byte[] buf = new byte[8];
+        ByteBuffer direct = ByteBuffer.allocateDirect(8);
+        for (FieldLengthType type : types) {
+            for (int len : new int[]{0, 1, 9, 10, 99, type.getMaxLength()}) {
+                Assert.assertEquals(type.getByteCount(), type.writeLength(buf, 3, len));
+                Assert.assertEquals(len, type.readLength(buf, 3));
+                Assert.assertEquals(type.encode(len), EncodeUtil.bytes2Hex(buf, 3, type.getByteCount()));
+
+                direct.clear();
+                direct.put(buf);
+                Assert.assertEquals(len, type.readLength(direct, 3));
+
+                ByteBuffer written = ByteBuffer.allocateDirect(8);
+                Assert.assertEquals(type.getByteCount(), type.writeLength(written, 2, len));
+                Assert.assertEquals(0, written.position());
+                Assert.assertEquals(len, type.readLength(written, 2));
+            }
+        }
+    }
+
+    @Test
+    public void overflow() {
+        FieldLengthType[] types = {LLVAR, LLLVAR, LLLLVAR, LLVAR_ASCII, LLLVAR_ASCII};
+        for (FieldLengthType type : types) {
+            try {
+                type.encode(type.getMaxLength() + 1);
+                Assert.fail(type + "超出范围应该抛出异常");
+            } catch (Iso8583Exception e) {
+                // 预期异常
+            }
+        }
+    }
+
+    @Test(expected = Iso8583Exception.class)
+    public void invalidBcdLength() {
+        LLVAR.readLength(new byte[]{0x1A}, 0);
+    }
+
+    @Test(expected = Iso8583Exception.class)
+    public void invalidAsciiLength() {
+        LLVAR_ASCII.readLength(new byte[]{'0', ' '}, 0);
+    }
+}
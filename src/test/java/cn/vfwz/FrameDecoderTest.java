@@ -0,0 +1,169 @@
+package cn.vfwz;
+
+import cn.vfwz.iso8583.exception.Iso8583Exception;
+import cn.vfwz.iso8583.message.DefaultMessageConfig;
+import cn.vfwz.iso8583.message.FrameDecoder;
+import cn.vfwz.iso8583.message.Message;
+import cn.vfwz.iso8583.message.MessageConfig;
+import cn.vfwz.iso8583.message.MessageDecoder;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static cn.vfwz.iso8583.constant.FieldIndex.*;
+
+public class FrameDecoderTest {
+
+    private static final String[] SAMPLES = {PosMessageTest.SIGNIN_REQUEST, PosMessageTest.PAY_REQUEST,
+            PosMessageTest.PAY_RESPONSE, PosMessageTest.SIGN_IMG_REQUEST, PosMessageTest.DOWNLOAD_RESPONSE};
+
+    /**
+     * 生成带长度部分的POS报文
+     */
+    private List<byte[]> posFrames() {
+        MessageDecoder decoder = new MessageDecoder(MessageFixtures.posConfig());
+        List<byte[]> frames = new ArrayList<>();
+        for (String sample : SAMPLES) {
+            frames.add(decoder.decode(sample).getBytes());
+        }
+        return frames;
+    }
+
+    private byte[] concat(List<byte[]> frames) {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        for (byte[] frame : frames) {
+            stream.write(frame, 0, frame.length);
+        }
+        return stream.toByteArray();
+    }
+
+    private static byte[] toArray(ByteBuffer frame) {
+        byte[] bytes = new byte[frame.remaining()];
+        frame.duplicate().get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void decodeWholeBuffer() {
+        List<byte[]> frames = posFrames();
+        byte[] stream = concat(frames);
+        FrameDecoder frameDecoder = new FrameDecoder(MessageFixtures.posConfig());
+        Assert.assertEquals(2, frameDecoder.getHeaderLength());
+
+        // 最后一个报文只有一半
+        ByteBuffer buffer = ByteBuffer.wrap(stream, 0, stream.length - 10);
+        List<ByteBuffer> out = new ArrayList<>();
+        Assert.assertEquals(frames.size() - 1, frameDecoder.decode(buffer, out));
+        for (int i = 0; i < out.size(); i++) {
+            Assert.assertArrayEquals(frames.get(i), toArray(out.get(i)));
+        }
+        Assert.assertEquals(stream.length - frames.get(frames.size() - 1).length, buffer.position());
+
+        // 切片可以直接解析
+        MessageDecoder decoder = new MessageDecoder(MessageFixtures.posConfig());
+        Message message = decoder.decodeLazy(out.get(1), true);
+        Assert.assertEquals(new MessageDecoder(MessageFixtures.posConfig()).decode(SAMPLES[1]).getValue(41), message.getValue(41));
+    }
+
+    @Test
+    public void feedRandomChunks() {
+        List<byte[]> frames = posFrames();
+        byte[] stream = concat(frames);
+        Random random = new Random(8583);
+        for (int round = 0; round < 50; round++) {
+            FrameDecoder frameDecoder = new FrameDecoder(MessageFixtures.posConfig());
+            List<byte[]> received = new ArrayList<>();
+            List<ByteBuffer> out = new ArrayList<>();
+            int position = 0;
+            while (position < stream.length) {
+                // 包括1字节的分片，长度部分也会被拆开
+                int size = Math.min(stream.length - position, round == 0 ? 1 : 1 + random.nextInt(400));
+                ByteBuffer chunk = ByteBuffer.wrap(Arrays.copyOfRange(stream, position, position + size));
+                out.clear();
+                frameDecoder.feed(chunk, out);
+                Assert.assertFalse(chunk.hasRemaining());
+                for (ByteBuffer frame : out) {
+                    received.add(toArray(frame));
+                }
+                position += size;
+            }
+            Assert.assertFalse(frameDecoder.hasPartialFrame());
+            Assert.assertEquals(frames.size(), received.size());
+            for (int i = 0; i < frames.size(); i++) {
+                Assert.assertArrayEquals(frames.get(i), received.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void readChannel() throws Exception {
+        List<byte[]> frames = posFrames();
+        // 多个报文重复，超过内部缓冲区初始容量
+        List<byte[]> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            expected.addAll(frames);
+        }
+        ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(concat(expected)));
+        FrameDecoder frameDecoder = new FrameDecoder(MessageFixtures.posConfig());
+        List<byte[]> received = new ArrayList<>();
+        List<ByteBuffer> out = new ArrayList<>();
+        while (frameDecoder.read(channel, out) >= 0) {
+            for (ByteBuffer frame : out) {
+                received.add(toArray(frame));
+            }
+            out.clear();
+        }
+        Assert.assertFalse(frameDecoder.hasPartialFrame());
+        Assert.assertEquals(expected.size(), received.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertArrayEquals(expected.get(i), received.get(i));
+        }
+    }
+
+    @Test
+    public void unionHeaderLength() {
+        // 银联报文头：头长度1字节、版本1字节、4字节ASCII总长度(包括报文头)
+        FrameDecoder frameDecoder = new FrameDecoder(DefaultMessageConfig.produceUnion());
+        Assert.assertEquals(6, frameDecoder.getHeaderLength());
+        byte[] frame = new byte[12];
+        frame[0] = 0x2E;
+        frame[1] = 0x02;
+        System.arraycopy("0012".getBytes(StandardCharsets.US_ASCII), 0, frame, 2, 4);
+        List<ByteBuffer> out = new ArrayList<>();
+        Assert.assertEquals(0, frameDecoder.feed(ByteBuffer.wrap(frame, 0, 4), out));
+        Assert.assertEquals(1, frameDecoder.feed(ByteBuffer.wrap(frame, 4, 8), out));
+        Assert.assertArrayEquals(frame, toArray(out.get(0)));
+    }
+
+    @Test
+    public void unionEncodedFrame() {
+        MessageConfig config = DefaultMessageConfig.produceUnion();
+        Message message = MessageFixtures.unionEncoder(config)
+                .setField(F3, "000000")
+                .setField(F11, "123456")
+                .encode();
+        // 总长度为十进制ASCII，包括报文头
+        Assert.assertEquals(String.format("%04d", message.getByteLength()), message.getValue(TOTAL_MESSAGE_LENGTH));
+        byte[] frame = message.getBytes();
+        List<ByteBuffer> out = new ArrayList<>();
+        Assert.assertEquals(1, new FrameDecoder(config).feed(ByteBuffer.wrap(frame), out));
+        Assert.assertArrayEquals(frame, toArray(out.get(0)));
+        Assert.assertEquals("123456", new MessageDecoder(config).decode(out.get(0), true).getValue(F11));
+    }
+
+    @Test(expected = Iso8583Exception.class)
+    public void frameTooLong() {
+        FrameDecoder frameDecoder = new FrameDecoder(MessageFixtures.posConfig(), 100);
+        frameDecoder.decode(ByteBuffer.wrap(new byte[]{0x01, 0x00, 0x00}), new ArrayList<>());
+    }
+}
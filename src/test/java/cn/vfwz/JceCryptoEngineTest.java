@@ -0,0 +1,129 @@
+package cn.vfwz;
+
+import cn.vfwz.iso8583.crypto.JceCryptoEngine;
+import cn.vfwz.iso8583.crypto.KeyHandle;
+import cn.vfwz.iso8583.util.EncodeUtil;
+import cn.vfwz.iso8583.util.MacUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class JceCryptoEngineTest {
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 2000;
+
+    @Test
+    public void keyHandleCache() {
+        JceCryptoEngine engine = new JceCryptoEngine(2);
+        byte[] key = EncodeUtil.hex2Bytes("0123456789ABCDEF");
+        KeyHandle handle = engine.getKeyHandle(key);
+        Assert.assertSame(handle, engine.getKeyHandle(key.clone()));
+        // 修改传入的数组不影响缓存
+        key[0] = 0;
+        Assert.assertNotSame(handle, engine.getKeyHandle(key));
+        engine.getKeyHandle(new byte[16]);
+        engine.getKeyHandle(new byte[24]);
+        Assert.assertEquals(2, engine.getCachedKeyCount());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() {
+        JceCryptoEngine engine = new JceCryptoEngine(2);
+        byte[] first = EncodeUtil.hex2Bytes("0123456789ABCDEF");
+        byte[] second = EncodeUtil.hex2Bytes("FEDCBA9876543210");
+        KeyHandle handle = engine.getKeyHandle(first);
+        KeyHandle secondHandle = engine.getKeyHandle(second);
+        // 再次使用第一个密钥后，超出容量时淘汰第二个
+        Assert.assertSame(handle, engine.getKeyHandle(first));
+        engine.getKeyHandle(new byte[16]);
+        Assert.assertEquals(2, engine.getCachedKeyCount());
+        Assert.assertSame(handle, engine.getKeyHandle(first));
+        Assert.assertNotSame(secondHandle, engine.getKeyHandle(second));
+    }
+
+    /**
+     * 同一线程交替使用多个密钥，共用的Cipher重新init后结果不受上一个密钥影响
+     */
+    @Test
+    public void alternateKeys() {
+        byte[] data = EncodeUtil.hex2Bytes("0123456789ABCDEF0123456789ABCDEF");
+        KeyHandle first = new KeyHandle(EncodeUtil.hex2Bytes("0123456789ABCDEFFEDCBA9876543210"));
+        KeyHandle second = new KeyHandle(EncodeUtil.hex2Bytes("FEDCBA98765432100123456789ABCDEF"));
+        byte[] expected = new byte[16];
+        first.encrypt(data, 0, 16, expected, 0);
+        byte[] out = new byte[16];
+        second.encrypt(data, 0, 16, out, 0);
+        Assert.assertFalse(Arrays.equals(expected, out));
+        first.encrypt(data, 0, 16, out, 0);
+        Assert.assertArrayEquals(expected, out);
+        first.decrypt(out, 0, 16, out, 0);
+        Assert.assertArrayEquals(data, out);
+    }
+
+    /**
+     * 多线程使用不同密钥交替计算MAC及3DES，结果与单线程计算一致
+     */
+    @Test
+    public void concurrentMacAndDes() throws Exception {
+        Random random = new Random(8583);
+        int keyCount = 64;
+        List<byte[]> keys = new ArrayList<>();
+        List<byte[]> data = new ArrayList<>();
+        List<byte[]> expectedMac = new ArrayList<>();
+        List<byte[]> expectedDes = new ArrayList<>();
+        JceCryptoEngine reference = new JceCryptoEngine();
+        for (int i = 0; i < keyCount; i++) {
+            byte[] key = new byte[16];
+            random.nextBytes(key);
+            byte[] bytes = new byte[16 + random.nextInt(300)];
+            random.nextBytes(bytes);
+            keys.add(key);
+            data.add(bytes);
+            expectedMac.add(MacUtil.mac919(key, bytes));
+            byte[] des = new byte[16];
+            reference.encrypt(key, bytes, 0, 16, des, 0);
+            expectedDes.add(des);
+        }
+
+        // 缓存容量小于密钥个数，同时验证淘汰
+        JceCryptoEngine engine = new JceCryptoEngine(16);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                final int seed = t;
+                futures.add(executor.submit((Callable<Integer>) () -> {
+                    Random r = new Random(seed);
+                    byte[] des = new byte[16];
+                    for (int round = 0; round < ROUNDS; round++) {
+                        int i = r.nextInt(keyCount);
+                        byte[] key = keys.get(i);
+                        byte[] mac = engine.cbcMac(Arrays.copyOf(key, 8), null, data.get(i), 0, data.get(i).length);
+                        engine.decrypt(Arrays.copyOfRange(key, 8, 16), mac, 0, 8, mac, 0);
+                        engine.encrypt(Arrays.copyOf(key, 8), mac, 0, 8, mac, 0);
+                        Assert.assertArrayEquals(expectedMac.get(i), mac);
+                        engine.encrypt(key, data.get(i), 0, 16, des, 0);
+                        Assert.assertArrayEquals(expectedDes.get(i), des);
+                    }
+                    return ROUNDS;
+                }));
+            }
+            for (Future<Integer> future : futures) {
+                Assert.assertEquals(ROUNDS, (int) future.get(60, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertTrue(engine.getCachedKeyCount() <= 16);
+    }
+}
@@ -0,0 +1,112 @@
+package cn.vfwz;
+
+import cn.vfwz.iso8583.crypto.MacCalculator;
+import cn.vfwz.iso8583.message.Message;
+import cn.vfwz.iso8583.message.MessageConfig;
+import cn.vfwz.iso8583.message.MessageDecoder;
+import cn.vfwz.iso8583.message.MessageView;
+import cn.vfwz.iso8583.util.EncodeUtil;
+import cn.vfwz.iso8583.util.MacUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static cn.vfwz.iso8583.constant.FieldIndex.*;
+
+public class MacCalculatorTest {
+
+    private static final String KEY = "0123456789ABCDEF";
+    private static final String DOUBLE_KEY = "FEDCBA98765432100123456789ABCDEF";
+    private static final String[] SAMPLES = {PosMessageTest.SIGNIN_REQUEST, PosMessageTest.PAY_REQUEST,
+            PosMessageTest.PAY_RESPONSE, PosMessageTest.SIGN_IMG_REQUEST};
+
+    @Test
+    public void macBlock() {
+        MessageDecoder decoder = new MessageDecoder(MessageFixtures.frozenPosConfig());
+        for (String sample : SAMPLES) {
+            Message message = decoder.decode(sample);
+            byte[] expected = EncodeUtil.hex2Bytes(message.getMacBlockString());
+            Assert.assertArrayEquals(expected, message.getMacBlock());
+            Assert.assertArrayEquals(expected, decoder.decodeLazy(EncodeUtil.hex2Bytes(sample)).getMacBlock());
+            // macBlock是getBytes()中连续的一段
+            byte[] bytes = message.getBytes();
+            byte[] region = new byte[message.getMacBlockLength()];
+            System.arraycopy(bytes, message.getMacBlockOffset(), region, 0, region.length);
+            Assert.assertArrayEquals(expected, region);
+        }
+    }
+
+    @Test
+    public void sameAsMacUtil() {
+        MessageDecoder decoder = new MessageDecoder(MessageFixtures.frozenPosConfig());
+        MacCalculator x99 = MacCalculator.x99(EncodeUtil.hex2Bytes(KEY));
+        MacCalculator x919 = MacCalculator.x919(EncodeUtil.hex2Bytes(DOUBLE_KEY));
+        for (String sample : SAMPLES) {
+            Message message = decoder.decode(sample);
+            String macBlock = message.getMacBlockString();
+            Assert.assertEquals(MacUtil.MAC(KEY, null, macBlock), EncodeUtil.bytes2Hex(x99.update(message).doFinal()));
+            Assert.assertEquals(MacUtil.Mac_919(DOUBLE_KEY, null, macBlock), EncodeUtil.bytes2Hex(x919.update(message).doFinal()));
+            // 延迟解析的报文
+            Message lazy = decoder.decodeLazy(EncodeUtil.hex2Bytes(sample));
+            Assert.assertEquals(MacUtil.MAC(KEY, null, macBlock), EncodeUtil.bytes2Hex(x99.update(lazy).doFinal()));
+        }
+    }
+
+    @Test
+    public void updateInPieces() {
+        byte[] data = new byte[301];
+        Random random = new Random(8583);
+        random.nextBytes(data);
+        byte[] iv = EncodeUtil.hex2Bytes("1122334455667788");
+        MacCalculator calculator = MacCalculator.x99(EncodeUtil.hex2Bytes(KEY)).reset(iv);
+        byte[] expected = MacUtil.mac(EncodeUtil.hex2Bytes(KEY), iv, data);
+        for (int round = 0; round < 20; round++) {
+            int position = 0;
+            while (position < data.length) {
+                int size = Math.min(data.length - position, random.nextInt(20));
+                if (size == 1) {
+                    calculator.update(data[position]);
+                } else {
+                    calculator.update(ByteBuffer.allocateDirect(data.length).put(data), position, size);
+                }
+                position += size;
+            }
+            Assert.assertArrayEquals(expected, calculator.doFinal());
+        }
+    }
+
+    @Test
+    public void signAndVerify() {
+        MessageConfig config = MessageFixtures.frozenPosConfig();
+        Message message = new MessageDecoder(config).decode(PosMessageTest.PAY_REQUEST);
+        Assert.assertNotNull(message.getField(F64));
+        MacCalculator calculator = MacCalculator.x919(EncodeUtil.hex2Bytes(DOUBLE_KEY));
+
+        byte[] frame = new byte[message.getByteLength() + 4];
+        int length = calculator.sign(message, frame, 4);
+        Assert.assertEquals(message.getByteLength(), length);
+        byte[] expected = EncodeUtil.hex2Bytes(MacUtil.Mac_919(DOUBLE_KEY, null, message.getMacBlockString()));
+        byte[] mac = new byte[8];
+        System.arraycopy(frame, 4 + length - 8, mac, 0, 8);
+        Assert.assertArrayEquals(expected, mac);
+
+        // 接收方按报文视图校验，直接内存缓冲区
+        MessageView view = new MessageView(config, true);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(length);
+        buffer.put(frame, 4, length).flip();
+        Assert.assertTrue(calculator.verify(view.wrap(buffer)));
+        Assert.assertArrayEquals(expected, view.getBytes(F64));
+
+        // 篡改4域金额
+        int amountOffset = view.getValueOffset(F4);
+        buffer.put(amountOffset, (byte) (buffer.get(amountOffset) ^ 0x01));
+        Assert.assertFalse(calculator.verify(view.wrap(buffer)));
+
+        // 没有MAC域
+        Message signIn = new MessageDecoder(config).decode(PosMessageTest.SIGNIN_REQUEST);
+        Assert.assertNull(signIn.getField(F64));
+        Assert.assertFalse(calculator.verify(view.wrap(ByteBuffer.wrap(signIn.getBytes()))));
+    }
+}
@@ -0,0 +1,92 @@
+package cn.vfwz;
+
+import cn.vfwz.iso8583.crypto.CryptoEngine;
+import cn.vfwz.iso8583.crypto.JceCryptoEngine;
+import cn.vfwz.iso8583.exception.Iso8583Exception;
+import cn.vfwz.iso8583.util.EncodeUtil;
+import cn.vfwz.iso8583.util.MacUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * <p>期望值由原位数组DES实现计算(修正string2Binary在Java 8以上丢失每个半字节最高位的问题后)，
+ * 并与公开的DES测试向量一致</p>
+ */
+public class MacUtilTest {
+
+    private static final String KEY = "0123456789ABCDEF";
+    private static final String DOUBLE_KEY = "FEDCBA98765432100123456789ABCDEF";
+    private static final String MAC_DATA = "0200702406C020C09A1116622424230000006900000000000000111100007914155408242903071000000012313030313639313938343332393030343538323030304200";
+
+    @Test
+    public void des() {
+        // 公开测试向量
+        Assert.assertEquals("85E813540F0AB405", MacUtil.DES_1("0123456789ABCDEF", "133457799BBCDFF1", 0));
+        Assert.assertEquals("0123456789ABCDEF", MacUtil.DES_1("85E813540F0AB405", "133457799BBCDFF1", 1));
+        Assert.assertEquals("3FA40E8A984D4815", MacUtil.DES_1("4e6f772069732074", "0123456789abcdef", 0));
+        Assert.assertEquals("AAEA30F286270F21", MacUtil.DES_1("4E6F772069732074", "133457799BBCDFF1", 0));
+        Assert.assertNull(MacUtil.DES_1("00", KEY, 0));
+    }
+
+    @Test
+    public void des3() {
+        Assert.assertEquals("F566F4C1C3C667C0", MacUtil.DES_3("4E6F772069732074", DOUBLE_KEY, 0));
+        Assert.assertEquals("91D9CE9F730E9308", MacUtil.DES_3("4E6F772069732074", DOUBLE_KEY, 1));
+        Assert.assertEquals("4E6F772069732074", MacUtil.DES_3("F566F4C1C3C667C0", DOUBLE_KEY, 1));
+        // K1=K2时与单DES相同
+        Assert.assertEquals(MacUtil.DES_1("4E6F772069732074", KEY, 0), MacUtil.DES_3("4E6F772069732074", KEY + KEY, 0));
+    }
+
+    @Test
+    public void mac() {
+        Assert.assertEquals("DE2FCE3A56D85BBB", MacUtil.MAC(KEY, null, MAC_DATA));
+        Assert.assertEquals("3C488099FC255B59", MacUtil.MAC(KEY, "1122334455667788", MAC_DATA));
+        Assert.assertEquals("50030BADD282FBBD", MacUtil.MAC(KEY, null, "0102030405"));
+        Assert.assertEquals("EA212B0ABED4718A", MacUtil.Mac_919(DOUBLE_KEY, null, MAC_DATA));
+        Assert.assertArrayEquals(EncodeUtil.hex2Bytes("EA212B0ABED4718A"),
+                MacUtil.mac919(EncodeUtil.hex2Bytes(DOUBLE_KEY), EncodeUtil.hex2Bytes(MAC_DATA)));
+        // 奇数长度右补"0"
+        Assert.assertEquals(MacUtil.MAC(KEY, null, "0102030400"), MacUtil.MAC(KEY, null, "010203040"));
+        Assert.assertEquals(MacUtil.MAC(KEY, null, MAC_DATA), MacUtil.MAC(KEY, null, MAC_DATA.substring(0, MAC_DATA.length() - 1)));
+        Assert.assertEquals("EA212B0ABED4718A", MacUtil.Mac_919(DOUBLE_KEY, null, MAC_DATA.substring(0, MAC_DATA.length() - 1)));
+    }
+
+    @Test
+    public void divDataAndDpk() {
+        Assert.assertEquals("6448A6665D1A32AC", MacUtil.divData("1234567890ABCDEF", DOUBLE_KEY, 0));
+        Assert.assertEquals("6F1C2D0908BD00B4", MacUtil.divData("1234567890ABCDEF", "abcdefgh12345678", 1));
+        Assert.assertEquals("3545E0A015B362B7A93788EE367720EA", MacUtil.getDPK("6222020000000000", "0000000000000001", DOUBLE_KEY));
+        Assert.assertEquals("0A0C6A4C70844F44", MacUtil.createPwd("6224242300000069", "123456", DOUBLE_KEY));
+    }
+
+    @Test
+    public void xOrAndReverse() {
+        Assert.assertEquals("FEDC45677654CDEF", MacUtil.xOr("0123456789ABCDEF", "FFFF0000FFFF0000"));
+        Assert.assertEquals("FEDCBA9876543210", MacUtil.reverse("0123456789ABCDEF"));
+    }
+
+    @Test
+    public void engineCbcMac() {
+        CryptoEngine engine = new JceCryptoEngine();
+        byte[] key = EncodeUtil.hex2Bytes(KEY);
+        byte[] data = EncodeUtil.hex2Bytes(MAC_DATA);
+        // 逐块DES加密与cbcMac一致
+        byte[] chain = new byte[8];
+        for (int position = 0; position < data.length; position += 8) {
+            for (int i = position; i < Math.min(position + 8, data.length); i++) {
+                chain[i - position] ^= data[i];
+            }
+            engine.encrypt(key, chain, 0, 8, chain, 0);
+        }
+        Assert.assertArrayEquals(chain, engine.cbcMac(key, null, data, 0, data.length));
+        // 数据区间
+        byte[] padded = new byte[data.length + 10];
+        System.arraycopy(data, 0, padded, 5, data.length);
+        Assert.assertArrayEquals(chain, engine.cbcMac(key, null, padded, 5, data.length));
+    }
+
+    @Test(expected = Iso8583Exception.class)
+    public void illegalKeyLength() {
+        new JceCryptoEngine().encrypt(new byte[7], new byte[8], 0, 8, new byte[8], 0);
+    }
+}
@@ -0,0 +1,59 @@
+package cn.vfwz;
+
+import cn.vfwz.iso8583.message.DefaultMessageConfig;
+import cn.vfwz.iso8583.message.MessageConfig;
+import cn.vfwz.iso8583.message.MessageEncoder;
+import cn.vfwz.iso8583.message.field.VariableFieldType;
+
+import static cn.vfwz.iso8583.constant.FieldIndex.*;
+import static cn.vfwz.iso8583.enumeration.FieldLengthType.LLLVAR;
+import static cn.vfwz.iso8583.enumeration.FieldValueType.ASCII;
+
+/**
+ * <p>测试共用的报文配置及报文组装，样本报文见PosMessageTest中的常量</p>
+ */
+public final class MessageFixtures {
+
+    private MessageFixtures() {
+    }
+
+    /**
+     * 解析PosMessageTest中样本报文使用的配置，未冻结，可以继续修改
+     */
+    public static MessageConfig posConfig() {
+        MessageConfig config = DefaultMessageConfig.produce();
+        config.set(new VariableFieldType(F59, LLLVAR, ASCII)); // 59域是TLV应该直接存HEX的，多转了一道
+        return config;
+    }
+
+    /**
+     * 冻结后的posConfig()
+     */
+    public static MessageConfig frozenPosConfig() {
+        return posConfig().freeze();
+    }
+
+    /**
+     * 冻结后的银联128域配置
+     */
+    public static MessageConfig frozenUnionConfig() {
+        return DefaultMessageConfig.produceUnion().freeze();
+    }
+
+    /**
+     * 已设置银联报文头及MTI为0200的组装器，调用方继续设置其他域
+     */
+    public static MessageEncoder unionEncoder(MessageConfig config) {
+        return new MessageEncoder(config)
+                .setField(HEADER_LENGTH, "2E")
+                .setField(HEADER_FLAG_AND_VERSION, "02")
+                .setField(DESTINATION_ID, "00010000   ")
+                .setField(SOURCE_ID, "48430000   ")
+                .setField(RESERVERD, "000")
+                .setField(BATCH_NUMBER, "00")
+                .setField(TRANS_INFO, "00000000")
+                .setField(USER_INFO, "0")
+                .setField(REJECT_CODE, "00000")
+                .setField(MTI, "0200");
+    }
+}
@@ -0,0 +1,65 @@
+package cn.vfwz;
+
+import cn.vfwz.iso8583.message.*;
+import cn.vfwz.iso8583.util.EncodeUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static cn.vfwz.iso8583.constant.FieldIndex.*;
+
+public class MessageViewTest {
+
+    @Test
+    public void viewMatchesDecodedMessage() {
+        MessageConfig config = MessageFixtures.frozenPosConfig();
+        MessageDecoder decoder = new MessageDecoder(config);
+        MessageView view = new MessageView(config);
+
+        // 多个报文依次放在同一个直接内存缓冲区中，同一个视图反复指向
+        String[] samples = {PosMessageTest.SIGNIN_RESPONSE, PosMessageTest.PAY_REQUEST, PosMessageTest.PAY_RESPONSE};
+        ByteBuffer buffer = ByteBuffer.allocateDirect(4096);
+        int[] offsets = new int[samples.length];
+        for (int i = 0; i < samples.length; i++) {
+            offsets[i] = buffer.position();
+            buffer.put(EncodeUtil.hex2Bytes(samples[i]));
+        }
+
+        for (int i = 0; i < samples.length; i++) {
+            Message message = decoder.decode(samples[i]);
+            view.wrap(buffer, offsets[i], samples[i].length() / 2);
+            Assert.assertEquals(samples[i].length() / 2, view.getFrameLength());
+            Assert.assertEquals(message.getBitmapBitString(), view.getBitmap().toBitString());
+            for (int index = MessageConfig.MIN_FIELD_INDEX; index <= config.getFieldsCount(); index++) {
+                if (index == TOTAL_MESSAGE_LENGTH) {
+                    continue;
+                }
+                Assert.assertEquals(message.getValue(index), view.getValue(index));
+                Assert.assertEquals(message.getField(index) != null, view.isPresent(index));
+                if (view.isPresent(index)) {
+                    Assert.assertArrayEquals(message.getField(index).getValueBytes(), view.getBytes(index));
+                }
+            }
+            Assert.assertArrayEquals(message.getBytes(), view.toMessage().getBytes());
+        }
+    }
+
+    @Test
+    public void wrapByteArray() {
+        MessageView view = new MessageView(MessageFixtures.frozenPosConfig());
+        byte[] data = EncodeUtil.hex2Bytes(PosMessageTest.PAY_REQUEST);
+        view.wrap(data);
+        Assert.assertEquals("0200", view.getValue(MTI));
+        Assert.assertNull(view.getValue(F39));
+
+        byte[] f41 = new byte[8];
+        Assert.assertEquals(8, view.getBytes(F41, f41, 0));
+        Assert.assertEquals(view.getValue(F41), new String(f41));
+
+        Message message = view.toMessage();
+        message.updateValue(F39, "00");
+        Assert.assertEquals("00", message.getValue(F39));
+        Assert.assertNull(view.getValue(F39));
+    }
+}
@@ -0,0 +1,91 @@
+package cn.vfwz;
+
+import cn.vfwz.iso8583.crypto.PinBlock;
+import cn.vfwz.iso8583.util.EncodeUtil;
+import cn.vfwz.iso8583.util.MacUtil;
+import cn.vfwz.iso8583.util.PinUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class PinUtilTest {
+
+    private static final String CARD_NO = "6224242300000069";
+    private static final byte[] PIK = EncodeUtil.hex2Bytes("FEDCBA98765432100123456789ABCDEF");
+    private static final byte[] ZPK = EncodeUtil.hex2Bytes("0123456789ABCDEFFEDCBA9876543210");
+
+    @Test
+    public void pinBlock() {
+        Assert.assertEquals("061253DFFEDCBA98", PinUtil.pinBlockStr("123456", "123456789012345678"));
+        Assert.assertEquals("0612713176FEDCBA", PinUtil.pinBlockStr("123456", "1234567890123456"));
+        // 二磁道数据，取分隔符左边第二位开始的12位
+        Assert.assertEquals(PinUtil.pinBlockStr("123456", "1234567890123456"),
+                PinUtil.pinBlockStr("123456", "1234567890123456=49121010000000000"));
+        Assert.assertEquals("041234FFFFFFFFFF", PinUtil.pinBlockStr("1234"));
+        // 长度超过9位时长度字段为十六进制
+        Assert.assertEquals("0C123456789012FF", PinUtil.pinBlockStr("123456789012"));
+        // 与原有实现一致
+        Assert.assertEquals(MacUtil.createPwd(CARD_NO, "123456", EncodeUtil.bytes2Hex(PIK)),
+                PinUtil.encryptPin("123456", CARD_NO, PIK).toHex());
+    }
+
+    @Test
+    public void extractPin() {
+        byte[] block = new byte[10];
+        for (String pin : new String[]{"1234", "123456", "000000000", "123456789012"}) {
+            Assert.assertEquals(8, PinUtil.pinBlock(pin, CARD_NO, block, 2));
+            Assert.assertEquals(pin, PinUtil.extractPin(block, 2, CARD_NO));
+            Assert.assertEquals(pin, PinUtil.decryptPin(PinUtil.encryptPin(pin, CARD_NO, PIK), CARD_NO, PIK));
+        }
+        // 卡号不一致时校验不通过
+        PinUtil.pinBlock("123456", CARD_NO, block, 0);
+        try {
+            PinUtil.extractPin(block, 0, "6224242300000077");
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void invalidPin() {
+        for (String pin : new String[]{"123", "1234567890123", "12a456"}) {
+            try {
+                PinUtil.pinBlockByte(pin, CARD_NO);
+                Assert.fail(pin);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+        try {
+            PinUtil.pinBlockByte("123456", "622424230000");
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void translate() {
+        Random random = new Random(8583);
+        List<PinBlock> blocks = new ArrayList<>();
+        List<String> pins = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            String pin = String.valueOf(100000 + random.nextInt(900000));
+            pins.add(pin);
+            blocks.add(PinUtil.encryptPin(pin, CARD_NO, PIK));
+        }
+        PinBlock single = PinBlock.fromHex(blocks.get(0).toHex());
+        PinUtil.translate(single, PIK, ZPK);
+
+        PinUtil.translate(blocks, PIK, ZPK);
+        Assert.assertEquals(single.toHex(), blocks.get(0).toHex());
+        for (int i = 0; i < blocks.size(); i++) {
+            Assert.assertEquals(PinUtil.encryptPin(pins.get(i), CARD_NO, ZPK).toHex(), blocks.get(i).toHex());
+            Assert.assertEquals(pins.get(i), PinUtil.decryptPin(blocks.get(i), CARD_NO, ZPK));
+        }
+    }
+}
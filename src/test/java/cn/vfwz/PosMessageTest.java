@@ -2,14 +2,24 @@ package cn.vfwz;
 
 import cn.vfwz.iso8583.constant.FieldIndex;
 import cn.vfwz.iso8583.enumeration.AlignType;
+import cn.vfwz.iso8583.exception.Iso8583Exception;
 import cn.vfwz.iso8583.message.*;
 import cn.vfwz.iso8583.message.field.Field;
+import cn.vfwz.iso8583.message.field.FieldHolder;
 import cn.vfwz.iso8583.message.field.FixedFieldType;
 import cn.vfwz.iso8583.message.field.VariableFieldType;
+import cn.vfwz.iso8583.util.EncodeUtil;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static cn.vfwz.iso8583.constant.FieldIndex.*;
 import static cn.vfwz.iso8583.enumeration.FieldLengthType.*;
@@ -94,6 +104,263 @@ public class PosMessageTest {
         checkMessageDecodeAndEncode(PAY_RESPONSE);
     }
 
+    @Test
+    public void decodeBytesMessage() {
+        MessageConfig config = MessageFixtures.posConfig();
+        MessageDecoder decoder = new MessageDecoder(config);
+
+        String[] samples = {DOWNLOAD_REQUEST, DOWNLOAD_RESPONSE, SIGNIN_REQUEST, SIGNIN_RESPONSE,
+                PAY_REQUEST, PAY_RESPONSE, SIGN_IMG_REQUEST, SIGN_IMG_RESPONSE};
+        for (String sample : samples) {
+            // 按字节解析与按hex字符串解析结果应该一致
+            Message bytesMessage = decoder.decode(EncodeUtil.hex2Bytes(sample));
+            Assert.assertEquals(sample, bytesMessage.getHexString().substring(4));
+            Assert.assertEquals(decoder.decode(sample).toFormatString(), bytesMessage.toFormatString());
+
+            Message withLength = decoder.decodeWithMsgLength(bytesMessage.getBytes());
+            Assert.assertEquals(bytesMessage.getHexString(), withLength.getHexString());
+        }
+    }
+
+    @Test
+    public void decodeLazyMessage() {
+        MessageConfig config = MessageFixtures.posConfig();
+        MessageDecoder decoder = new MessageDecoder(config);
+
+        String[] samples = {SIGNIN_REQUEST, SIGNIN_RESPONSE, PAY_REQUEST, PAY_RESPONSE, SIGN_IMG_REQUEST};
+        for (String sample : samples) {
+            Message eager = decoder.decode(sample);
+
+            // 只访问部分域，其余域直接复制原始字节
+            Message lazy = decoder.decodeLazy(EncodeUtil.hex2Bytes(sample));
+            Assert.assertEquals(eager.getValue(MTI), lazy.getValue(MTI));
+            Assert.assertEquals(eager.getValue(F41), lazy.getValue(F41));
+            Assert.assertEquals(eager.getBitmapString(), lazy.getBitmapString());
+            Assert.assertEquals(eager.getByteLength(), lazy.getByteLength());
+            Assert.assertArrayEquals(eager.getBytes(), lazy.getBytes());
+
+            // 修改后与完整解析的结果一致
+            ByteBuffer direct = ByteBuffer.allocateDirect(sample.length() / 2);
+            direct.put(EncodeUtil.hex2Bytes(sample)).flip();
+            Message lazyDirect = decoder.decodeLazy(direct, false);
+            eager.updateValue(F39, "96");
+            lazyDirect.updateValue(F39, "96");
+            eager.removeField(F11);
+            lazyDirect.removeField(F11);
+            Assert.assertArrayEquals(eager.getBytes(), lazyDirect.getBytes());
+            Assert.assertEquals(eager.toFormatString(), lazyDirect.toFormatString());
+        }
+    }
+
+    @Test
+    public void reuseMessage() {
+        MessageConfig config = MessageFixtures.posConfig();
+        config.freeze();
+        MessageDecoder decoder = new MessageDecoder(config);
+        MessagePool pool = new MessagePool(config, 2);
+        MessageEncoder encoder = new MessageEncoder(config);
+        FieldHolder holder = new FieldHolder(4);
+        ByteBuffer out = ByteBuffer.allocate(4096);
+
+        String[] samples = {SIGNIN_REQUEST, PAY_REQUEST, PAY_RESPONSE, SIGN_IMG_REQUEST, DOWNLOAD_RESPONSE};
+        for (String sample : samples) {
+            Message expected = decoder.decode(sample);
+            byte[] data = EncodeUtil.hex2Bytes(sample);
+
+            // 延迟解析到池中借出的报文，修改后写入复用的缓冲区
+            Message lazy = decoder.decodeLazy(ByteBuffer.wrap(data), false, pool.acquire());
+            Assert.assertTrue(lazy.getField(F41, holder));
+            Assert.assertEquals(expected.getValue(F41), holder.getValue());
+            lazy.updateValue(F39, "96");
+            expected.updateValue(F39, "96");
+            out.clear();
+            lazy.writeTo(out);
+            Assert.assertArrayEquals(expected.getBytes(), Arrays.copyOf(out.array(), out.position()));
+            pool.release(lazy);
+
+            // 解析到复用的报文，域在访问时生成
+            Message eager = decoder.decode(ByteBuffer.wrap(data), false, pool.acquire());
+            eager.updateValue(F39, "96");
+            Assert.assertArrayEquals(expected.getBytes(), eager.getBytes());
+            Assert.assertTrue(eager.getField(F41, holder));
+            Assert.assertEquals(expected.getValue(F41), holder.getValue());
+
+            // 复用组装器组装到复用的报文
+            encoder.reset();
+            Iterator<Field> fieldIterator = expected.getFieldIterator();
+            while (fieldIterator.hasNext()) {
+                encoder.setField(fieldIterator.next());
+            }
+            Message encoded = encoder.encode(pool.acquire());
+            Assert.assertEquals(expected.getHexString(), encoded.getHexString());
+            pool.release(encoded);
+            pool.release(eager);
+        }
+        Assert.assertEquals(2, pool.getIdleCount());
+
+        Message cleared = pool.acquire();
+        Assert.assertEquals(0, cleared.getByteLength());
+        Assert.assertFalse(cleared.getFieldIterator().hasNext());
+        Assert.assertFalse(cleared.getField(MTI, holder));
+        Assert.assertTrue(holder.isEmpty());
+
+        // clear()后保留的域对象在生成同一个域时复用
+        decoder.decode(ByteBuffer.wrap(EncodeUtil.hex2Bytes(PAY_REQUEST)), false, cleared);
+        Field f41 = cleared.getField(F41);
+        cleared.clear();
+        decoder.decode(ByteBuffer.wrap(EncodeUtil.hex2Bytes(PAY_RESPONSE)), false, cleared);
+        Assert.assertSame(f41, cleared.getField(F41));
+        Assert.assertEquals(decoder.decode(PAY_RESPONSE).getHexString(), cleared.getHexString());
+
+        // 组装的报文持有副本，组装器复用自己的域对象不影响之前组装的报文
+        Message first = encoder.reset().setField(MTI, "0800").setField(F11, "000001").encode();
+        Message second = encoder.reset().setField(MTI, "0800").setField(F11, "000002").encode(cleared);
+        Assert.assertEquals("000001", first.getValue(F11));
+        Assert.assertEquals("000002", second.getValue(F11));
+    }
+
+    @Test
+    public void decodeProjection() {
+        MessageConfig config = MessageFixtures.posConfig();
+        MessageDecoder decoder = new MessageDecoder(config);
+        FieldSet projection = FieldSet.of(F2, F4, F22, F41, F42, F55);
+
+        String[] samples = {SIGNIN_REQUEST, PAY_REQUEST, PAY_RESPONSE, SIGN_IMG_REQUEST};
+        for (String sample : samples) {
+            Message full = decoder.decode(sample);
+            Message projected = decoder.decode(EncodeUtil.hex2Bytes(sample), projection);
+            for (int index = MessageConfig.MIN_FIELD_INDEX; index <= F64; index++) {
+                if (index == BITMAP || index == TOTAL_MESSAGE_LENGTH) {
+                    continue;
+                }
+                if (projection.contains(index)) {
+                    Assert.assertEquals(full.getValue(index), projected.getValue(index));
+                    Assert.assertEquals(full.isPresent(index), projected.isPresent(index));
+                } else {
+                    Assert.assertNull(projected.getField(index));
+                    Assert.assertFalse(projected.isPresent(index));
+                }
+            }
+        }
+        Assert.assertEquals(6, projection.size());
+        Assert.assertFalse(projection.contains(F3));
+    }
+
+    @Test
+    public void writeToBuffer() {
+        MessageConfig config = MessageFixtures.posConfig();
+        MessageDecoder decoder = new MessageDecoder(config);
+
+        // 复用同一个缓冲区写入多个报文
+        ByteBuffer buffer = ByteBuffer.allocateDirect(4096);
+        String[] samples = {SIGNIN_REQUEST, PAY_REQUEST, PAY_RESPONSE, SIGN_IMG_REQUEST};
+        for (String sample : samples) {
+            Message message = decoder.decode(sample);
+            buffer.clear();
+            int written = message.writeTo(buffer);
+            Assert.assertEquals(message.getByteLength(), written);
+            Assert.assertEquals(written, buffer.position());
+
+            byte[] bytes = new byte[written + 3];
+            Assert.assertEquals(written, message.writeTo(bytes, 3));
+            buffer.flip();
+            byte[] fromBuffer = new byte[written];
+            buffer.get(fromBuffer);
+            Assert.assertEquals(message.getHexString().toUpperCase(), EncodeUtil.bytes2Hex(fromBuffer));
+            Assert.assertEquals(message.getHexString().toUpperCase(), EncodeUtil.bytes2Hex(Arrays.copyOfRange(bytes, 3, bytes.length)));
+        }
+    }
+
+    @Test
+    public void bitmap() {
+        MessageConfig config = MessageFixtures.posConfig();
+        Message message = new MessageDecoder(config).decode(PAY_REQUEST);
+        Assert.assertEquals("703C06C000C49A17", message.getBitmapString());
+        Assert.assertEquals(message.getValue(BITMAP), message.getBitmapString());
+
+        Bitmap bitmap = Bitmap.of(message.getBitmapBytes());
+        Assert.assertEquals(message.getBitmapBitString(), bitmap.toBitString());
+        int count = 0;
+        for (int index = bitmap.nextSetBit(1); index > 0; index = bitmap.nextSetBit(index + 1)) {
+            Assert.assertNotNull(message.getField(index));
+            count++;
+        }
+        Assert.assertEquals(bitmap.cardinality(), count);
+
+        Bitmap union = new Bitmap(128);
+        union.set(1);
+        union.set(70);
+        union.set(128);
+        Assert.assertEquals("8000000000000000" + "0400000000000001", EncodeUtil.bytes2Hex(union.toBytes()));
+        Assert.assertEquals(70, union.nextSetBit(2));
+        union.clear(70);
+        Assert.assertEquals(128, union.nextSetBit(2));
+        Assert.assertFalse(union.test(70));
+    }
+
+    @Test
+    public void updateAndRemoveField() {
+        MessageConfig config = MessageFixtures.posConfig();
+        MessageDecoder decoder = new MessageDecoder(config);
+        Message message = decoder.decode(PAY_RESPONSE);
+        int byteLength = message.getByteLength();
+        int removedLength = message.getField(F55).getByteLength() + message.getField(F39).getByteLength()
+                + (message.getField(F63) == null ? 0 : message.getField(F63).getByteLength());
+
+        message.removeField(F55);
+        Assert.assertFalse(message.isPresent(F55));
+        Assert.assertNull(message.getField(F55));
+        message.updateValue(F39, "05");
+        message.updateValue(F63, "0001");
+
+        Message decoded = decoder.decodeWithMsgLength(message.getBytes());
+        Assert.assertEquals(message.getHexString(), decoded.getHexString());
+        Assert.assertNull(decoded.getField(F55));
+        Assert.assertEquals("05", decoded.getValue(F39));
+        Assert.assertEquals("0001", decoded.getValue(F63));
+        Assert.assertEquals(message.getByteLength(), message.getBytes().length);
+        Assert.assertEquals(byteLength - removedLength + 2 + 4, message.getByteLength());
+        // 报文长度域不包含长度域本身
+        Assert.assertEquals(message.getByteLength() - 2, Integer.parseInt(message.getValue(TOTAL_MESSAGE_LENGTH), 16));
+    }
+
+    @Test
+    public void frozenConfigShared() throws Exception {
+        MessageConfig config = MessageFixtures.posConfig();
+        config.freeze();
+        try {
+            config.set(new FixedFieldType(F64, 8, HEX));
+            Assert.fail("冻结后的配置不允许修改");
+        } catch (Iso8583Exception e) {
+            // expected
+        }
+
+        // 冻结后的解析器在多线程间共享
+        MessageDecoder decoder = new MessageDecoder(config);
+        String[] samples = {SIGNIN_RESPONSE, PAY_REQUEST, PAY_RESPONSE, SIGN_IMG_REQUEST};
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String sample = samples[i % samples.length];
+            results.add(executor.submit(() -> sample.equals(decoder.decode(sample).getHexString().substring(4))));
+        }
+        for (Future<Boolean> result : results) {
+            Assert.assertTrue(result.get());
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void halfByteGetBytes() {
+        // 两个域都不是整字节，合起来才是整字节，只能按hex字符串转换
+        MessageConfig config = new MessageConfig();
+        config.set(new FixedFieldType(1, 1, BCD, AlignType.NONE))
+                .set(new FixedFieldType(2, 3, BCD, AlignType.NONE));
+        Message message = new MessageDecoder(config).decode("1234");
+        Assert.assertArrayEquals(new byte[]{0x12, 0x34}, message.getBytes());
+        Assert.assertArrayEquals(new byte[]{0x12, 0x34}, message.getMacBlock());
+    }
+
     @Test
     public void subFieldDecode() {
         MessageConfig config = DefaultMessageConfig.produce();
@@ -115,6 +382,43 @@ public class PosMessageTest {
         MessageDecoder messageDecoder = new MessageDecoder(config);
         Message message = messageDecoder.decode(PAY_RESPONSE);
         System.out.println(message.toFormatString());
+
+        String formatted = message.toFormatString();
+        Assert.assertTrue(formatted.contains("[F60.4.1]"));
+        // 延迟解析的报文格式化输出与完整解析一致
+        Message lazy = messageDecoder.decodeLazy(EncodeUtil.hex2Bytes(PAY_RESPONSE));
+        Assert.assertEquals(formatted, lazy.toFormatString());
+        // 域变动后格式化输出临时生成bitmap域和报文长度域，与刷新后一致
+        lazy.removeField(F60);
+        String unrefreshed = lazy.toFormatString();
+        lazy.getFieldIterator();
+        Assert.assertEquals(lazy.toFormatString(), unrefreshed);
+
+        // 子域在第一次访问时解析
+        Field f60 = message.getField(F60);
+        Assert.assertSame(f60.getFieldMessage(), f60.getFieldMessage());
+        Field f604 = f60.getSubField(4);
+        Assert.assertEquals(f60.getValue().substring(6, 13), f604.getValue());
+        Assert.assertEquals("60.4.1", f604.getSubField(1).getIndexString());
+        Assert.assertEquals(f604.getValue().substring(0, 2), f604.getSubField(1).getValue());
+        Assert.assertNull(message.getField(F39).getFieldMessage());
+
+        // 子域格式不匹配时不影响报文解析，访问子域时才失败
+        MessageConfig badConfig = DefaultMessageConfig.produce();
+        MessageConfig hexSubConfig = new MessageConfig();
+        hexSubConfig.set(new FixedFieldType(1, 20, BCD, AlignType.NONE));
+        badConfig.getFieldType(F60).setFieldMessageConfig(hexSubConfig);
+        Message lenient = new MessageDecoder(badConfig).decode(PAY_RESPONSE);
+        Assert.assertEquals(f60.getValue(), lenient.getValue(F60));
+        String lenientFormatted = lenient.toFormatString();
+        Assert.assertTrue(lenientFormatted.contains("[F60]"));
+        Assert.assertFalse(lenientFormatted.contains("[F60.1]"));
+        try {
+            lenient.getField(F60).getSubField(1);
+            Assert.fail();
+        } catch (Iso8583Exception e) {
+            // expected
+        }
     }
 
     @Test
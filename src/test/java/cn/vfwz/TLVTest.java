@@ -1,13 +1,24 @@
 package cn.vfwz;
 
+import cn.vfwz.iso8583.exception.Iso8583Exception;
+import cn.vfwz.iso8583.message.Message;
+import cn.vfwz.iso8583.message.MessageConfig;
+import cn.vfwz.iso8583.message.MessageDecoder;
 import cn.vfwz.iso8583.message.tlv.TLV;
 import cn.vfwz.iso8583.message.tlv.TLVObject;
+import cn.vfwz.iso8583.message.tlv.TlvIterator;
+import cn.vfwz.iso8583.message.tlv.TlvReader;
+import cn.vfwz.iso8583.message.tlv.TlvWriter;
+import cn.vfwz.iso8583.util.EncodeUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 
+import static cn.vfwz.iso8583.constant.FieldIndex.F55;
+
 @Slf4j
 public class TLVTest {
 
@@ -43,4 +54,161 @@ public class TLVTest {
         List<TLVObject> parsedList = TLV.parse(s);
         parsedList.forEach(obj -> log.info("[{}][{}][{}]", obj.getTag(), obj.getLength(), obj.getValue()));
     }
+
+    @Test
+    public void readerTest() {
+        byte[] data = EncodeUtil.hex2Bytes("FFFF" + TLV_MESSAGE);
+        TlvReader reader = new TlvReader().wrap(data, 2, data.length - 2);
+        List<TLVObject> parsedList = TLV.parse(TLV_MESSAGE);
+        Assert.assertEquals(parsedList.size(), reader.getTagCount());
+        for (int i = 0; i < parsedList.size(); i++) {
+            TLVObject obj = parsedList.get(i);
+            int tag = Integer.parseInt(obj.getTag(), 16);
+            Assert.assertEquals(tag, reader.getTagAt(i));
+            Assert.assertEquals(obj.getTag(), TlvReader.tagHex(tag));
+            Assert.assertEquals(obj.getValue(), reader.getValueHex(tag));
+            Assert.assertEquals(obj.getLength(), reader.getValueLength(tag));
+        }
+        Assert.assertEquals("46FD62985CAAE758", EncodeUtil.bytes2Hex(reader.getValue(0x9F26)));
+        Assert.assertEquals("0000000000", reader.getValueHex(0x95));
+        Assert.assertFalse(reader.contains(0x9F27 << 8));
+        Assert.assertNull(reader.getValue(0x9F63));
+        Assert.assertEquals(-1, reader.getValueOffset(0x9F63));
+
+        // 重新指向其他数据
+        reader.wrap(EncodeUtil.hex2Bytes("9F6310" + "3134323933333330002004000000000095020102"));
+        Assert.assertEquals(2, reader.getTagCount());
+        Assert.assertFalse(reader.contains(0x9F26));
+        Assert.assertEquals("0102", reader.getValueHex(0x95));
+    }
+
+    @Test
+    public void readerLengthAndTag() {
+        StringBuilder longValue = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            longValue.append("AB");
+        }
+        // 3字节标签，2字节长度，3字节长度，重复标签
+        String hex = "DF810203010203" + "5F2081" + "C8" + longValue.substring(0, 400) + "9F1F82012C" + longValue + "5A0101" + "5A0102";
+        TlvReader reader = new TlvReader().wrap(EncodeUtil.hex2Bytes(hex));
+        Assert.assertEquals(5, reader.getTagCount());
+        Assert.assertEquals("010203", reader.getValueHex(0xDF8102));
+        Assert.assertEquals("DF8102", TlvReader.tagHex(0xDF8102));
+        Assert.assertEquals(200, reader.getValueLength(0x5F20));
+        Assert.assertEquals(300, reader.getValueLength(0x9F1F));
+        Assert.assertEquals("01", reader.getValueHex(0x5A));
+        Assert.assertEquals(0x5A, reader.getTagAt(4));
+
+        for (String invalid : new String[]{"9F", "9F26", "9F2608AABB", "9F2680", "9F268401000000"}) {
+            try {
+                reader.wrap(EncodeUtil.hex2Bytes(invalid));
+                Assert.fail(invalid);
+            } catch (Iso8583Exception e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void writerTest() {
+        byte[] data = EncodeUtil.hex2Bytes(TLV_MESSAGE);
+        TlvReader reader = new TlvReader().wrap(data);
+        TlvWriter writer = new TlvWriter(16);
+        for (int i = 0; i < reader.getTagCount(); i++) {
+            writer.put(reader.getTagAt(i), data, reader.getValueOffsetAt(i), reader.getValueLengthAt(i));
+        }
+        Assert.assertEquals(TLV_MESSAGE, EncodeUtil.bytes2Hex(writer.toByteArray()));
+
+        // 长度部分边界
+        int[][] lengths = {{0, 1}, {127, 1}, {128, 2}, {255, 2}, {256, 3}, {65535, 3}, {65536, 4}};
+        for (int[] length : lengths) {
+            Assert.assertEquals(length[1], TlvWriter.lengthByteCount(length[0]));
+            byte[] value = new byte[length[0]];
+            writer.reset().put(0x9F1F, ByteBuffer.wrap(value));
+            Assert.assertEquals(TlvWriter.encodedLength(0x9F1F, length[0]), writer.length());
+            Assert.assertEquals(length[0], new TlvReader().wrap(writer.toByteArray()).getValueLength(0x9F1F));
+        }
+        Assert.assertEquals("DF8102", EncodeUtil.bytes2Hex(new TlvWriter().putHeader(0xDF8102, 0).toByteArray()).substring(0, 6));
+    }
+
+    @Test
+    public void writeIssuerScript() {
+        byte[] scriptId = EncodeUtil.hex2Bytes("00000001");
+        byte[] command = EncodeUtil.hex2Bytes("8418000008A1B2C3D4E5F60718");
+        TlvWriter writer = new TlvWriter()
+                .put(0x91, EncodeUtil.hex2Bytes("1122334455667788" + "3030"))
+                .putHeader(0x72, TlvWriter.encodedLength(0x9F18, scriptId.length) + TlvWriter.encodedLength(0x86, command.length))
+                .put(0x9F18, scriptId)
+                .put(0x86, command);
+        String expected = "910A11223344556677883030" + "7216" + "9F180400000001" + "860D8418000008A1B2C3D4E5F60718";
+        Assert.assertEquals(expected, EncodeUtil.bytes2Hex(writer.toByteArray()));
+
+        // 直接写入报文的55域
+        MessageConfig config = MessageFixtures.posConfig();
+        Message message = new MessageDecoder(config).decode(PosMessageTest.PAY_REQUEST);
+        writer.writeTo(message, F55);
+        Assert.assertEquals(expected, message.getValue(F55));
+        Message decoded = new MessageDecoder(config).decodeWithMsgLength(message.getBytes());
+        Assert.assertEquals(expected, decoded.getValue(F55));
+        Assert.assertEquals(EncodeUtil.bytes2Hex(command), new TlvReader().wrap(decoded.getField(F55).getValueBytes()).getValueHex(0x72).substring(18));
+    }
+
+    @Test
+    public void constructedTags() {
+        byte[] script = EncodeUtil.hex2Bytes("8418000008A1B2C3D4E5F60718");
+        TlvWriter writer = new TlvWriter().put(0x91, EncodeUtil.hex2Bytes("11223344556677883030"));
+        for (int i = 1; i <= 2; i++) {
+            byte[] scriptId = new byte[]{0, 0, 0, (byte) i};
+            writer.putHeader(0x72, TlvWriter.encodedLength(0x9F18, 4) + TlvWriter.encodedLength(0x86, script.length))
+                    .put(0x9F18, scriptId)
+                    .put(0x86, script);
+        }
+        // 70模板中嵌套E1模板
+        writer.putHeader(0x70, TlvWriter.encodedLength(0x5A, 8) + TlvWriter.encodedLength(0xE1, 3))
+                .put(0x5A, EncodeUtil.hex2Bytes("6224242300000069"))
+                .putHeader(0xE1, 3).put(0x95, new byte[]{1});
+        byte[] data = writer.toByteArray();
+
+        TlvReader reader = new TlvReader().wrap(data);
+        Assert.assertEquals(4, reader.getTagCount());
+        Assert.assertFalse(reader.isConstructedAt(0));
+        Assert.assertTrue(reader.isConstructedAt(1));
+        Assert.assertTrue(TlvIterator.isConstructed(0xBF0C));
+        Assert.assertFalse(TlvIterator.isConstructed(0x9F26));
+        Assert.assertFalse(reader.contains(0x9F18)); // 子标签不在索引中
+
+        for (int i = 1; i <= 2; i++) {
+            TlvIterator children = reader.childrenAt(i);
+            Assert.assertTrue(children.next());
+            Assert.assertEquals(0x9F18, children.getTag());
+            Assert.assertEquals("0000000" + i, children.getValueHex());
+            Assert.assertTrue(children.next());
+            Assert.assertEquals(0x86, children.getTag());
+            Assert.assertArrayEquals(script, children.getValue());
+            Assert.assertFalse(children.next());
+        }
+
+        TlvIterator template = reader.children(0x70);
+        Assert.assertTrue(template.find(0xE1));
+        TlvIterator nested = template.children(new TlvIterator());
+        Assert.assertTrue(nested.find(0x95));
+        Assert.assertEquals("01", nested.getValueHex());
+        Assert.assertNull(reader.children(0x77));
+        try {
+            reader.children(0x91);
+            Assert.fail();
+        } catch (Iso8583Exception e) {
+            // expected
+        }
+
+        // 子标签在读取时才解码，格式错误的模板内容不影响外层
+        reader.wrap(EncodeUtil.hex2Bytes("7702FFFF" + "9F360200A1"));
+        Assert.assertEquals("00A1", reader.getValueHex(0x9F36));
+        try {
+            reader.children(0x77).next();
+            Assert.fail();
+        } catch (Iso8583Exception e) {
+            // expected
+        }
+    }
 }
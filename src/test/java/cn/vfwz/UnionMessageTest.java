@@ -8,7 +8,7 @@ import org.junit.Test;
 
 import java.util.Iterator;
 
-import static cn.vfwz.iso8583.constant.FieldIndex.F59;
+import static cn.vfwz.iso8583.constant.FieldIndex.*;
 import static cn.vfwz.iso8583.enumeration.FieldLengthType.LLLVAR;
 import static cn.vfwz.iso8583.enumeration.FieldValueType.ASCII;
 
@@ -74,4 +74,18 @@ public class UnionMessageTest {
         System.out.println(responseMessage.toFormatString());
     }
 
+    @Test
+    public void encodeMessageLength() {
+        MessageConfig config = DefaultMessageConfig.produceUnion();
+        Message message = MessageFixtures.unionEncoder(config)
+                .setField(F3, "000000")
+                .setField(F11, "123456")
+                .encode();
+        // 总长度为十进制ASCII，左补0，包括报文头
+        Assert.assertEquals(String.format("%04d", message.getByteLength()), message.getValue(TOTAL_MESSAGE_LENGTH));
+        Message decoded = new MessageDecoder(config).decodeWithMsgLength(message.getBytes());
+        Assert.assertEquals(message.getValue(TOTAL_MESSAGE_LENGTH), decoded.getValue(TOTAL_MESSAGE_LENGTH));
+        Assert.assertEquals("123456", decoded.getValue(F11));
+    }
+
 }